@@ -0,0 +1,85 @@
+package com.andrewsenin.pierogi.benchmarks;
+
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.compiler.VirtualMachine;
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.interpreter.Interpreter;
+import com.andrewsenin.pierogi.io.DummyIoManager;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.lexer.TokenList;
+import com.andrewsenin.pierogi.optimizer.ConstantFolder;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.resolver.Resolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Measures every stage of running a program from the corpus on its own, and all of them together
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PierogiBenchmark {
+
+    @Param({"fib", "pipeline", "strings", "closures"})
+    private String program;
+
+    private final IoManager ioManager = new DummyIoManager();
+    private String source;
+    private TokenList tokens;
+    private List<Expression> expressions;
+
+    @Setup
+    public void loadProgram() throws IOException {
+        try (InputStream stream = PierogiBenchmark.class.getResourceAsStream("/corpus/" + program + ".pg")) {
+            if (stream == null) {
+                throw new IOException("No program " + program + " in the corpus");
+            }
+            source = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        tokens = new Lexer(source, ioManager).lexSource();
+        // Folded before resolving, as when a program is run from a file
+        ConstantFolder constantFolder = new ConstantFolder();
+        expressions = new ArrayList<>();
+        new Parser(tokens, ioManager).parseTokens().forEach(expression -> expressions.add(constantFolder.fold(expression)));
+        new Resolver().resolve(expressions);
+    }
+
+    @Benchmark
+    public TokenList lex() {
+        return new Lexer(source, ioManager).lexSource();
+    }
+
+    @Benchmark
+    public List<Expression> parse() {
+        return new Parser(tokens, ioManager).parseTokens();
+    }
+
+    // Function bodies keep their JIT state between invocations, so this measures the warmed up interpreter
+    @Benchmark
+    public List<NativeData> interpret() {
+        return makeInterpreter().interpret(expressions);
+    }
+
+    @Benchmark
+    public void runOnVirtualMachine() {
+        new VirtualMachine(ioManager, new Frame(BuiltinsFrame.INSTANCE)).executeResolved(expressions.iterator());
+    }
+
+    @Benchmark
+    public List<NativeData> interpretSource() {
+        return makeInterpreter().interpret(source);
+    }
+
+    private Interpreter makeInterpreter() {
+        return new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+    }
+}
@@ -0,0 +1,17 @@
+package com.andrewsenin.pierogi;
+
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.datatypes.NativeData;
+
+import java.util.Iterator;
+import java.util.List;
+
+public interface ExecutionEngine {
+    List<NativeData> interpret(String source);
+
+    // Runs the source for its effects only, without holding on to the value of each expression
+    void execute(CharSequence source);
+
+    // The expressions must have been resolved in order against a fresh global scope
+    void executeResolved(Iterator<Expression> expressions);
+}
@@ -1,34 +1,72 @@
 package com.andrewsenin.pierogi;
 
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.cache.AstCache;
+import com.andrewsenin.pierogi.compiler.VirtualMachine;
 import com.andrewsenin.pierogi.datatypes.NativeData;
 import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
 import com.andrewsenin.pierogi.interpreter.Environment;
 import com.andrewsenin.pierogi.interpreter.Frame;
 import com.andrewsenin.pierogi.interpreter.Interpreter;
 import com.andrewsenin.pierogi.io.*;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.optimizer.ConstantFolder;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.resolver.Resolver;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 public class LanguageExecutable {
 
     private static final String EXECUTABLE_NAME = "pierogi";
     private static final String INPUT_PROMPT = EXECUTABLE_NAME + ">";
+    private static final String VIRTUAL_MACHINE_FLAG = "--vm";
+    private static final String NO_CACHE_FLAG = "--no-cache";
+    private static final String NO_FOLD_FLAG = "--no-fold";
+    private static final String REPL_LIMIT_FLAG = "--repl-limit=";
+    private static final String TRUNCATION_MARKER = "...";
+    public static final int NO_REPL_LIMIT = -1;
 
     private final IoManager ioManager;
-    private final Interpreter interpreter;
+    private final ExecutionEngine executionEngine;
+    private final AstCache astCache;
+    private final int replLimit; // The most characters of a value the REPL shows
 
     public static void main(String[] args) {
+        boolean useVirtualMachine = false;
+        boolean useAstCache = true;
+        boolean foldsConstants = true;
+        int replLimit = NO_REPL_LIMIT;
+        int flagCount = 0;
+        for (; flagCount < args.length && args[flagCount].startsWith("--"); flagCount++) {
+            if (args[flagCount].equals(VIRTUAL_MACHINE_FLAG)) {
+                useVirtualMachine = true;
+            } else if (args[flagCount].equals(NO_CACHE_FLAG)) {
+                useAstCache = false;
+            } else if (args[flagCount].equals(NO_FOLD_FLAG)) {
+                foldsConstants = false;
+                useAstCache = false; // Cached expressions have always been folded
+            } else if (args[flagCount].startsWith(REPL_LIMIT_FLAG)) {
+                replLimit = parseReplLimit(args[flagCount].substring(REPL_LIMIT_FLAG.length()));
+            } else {
+                exitWithUsage();
+            }
+        }
+        args = Arrays.copyOfRange(args, flagCount, args.length);
         if (args.length > 1) {
-            System.err.println("Usage: " + EXECUTABLE_NAME + " [script]");
-            System.exit(1);
+            exitWithUsage();
         }
         IoManager ioManager = new ConsoleIoManager();
-        Interpreter interpreter = new Interpreter(ioManager, new Environment(new Frame(new BuiltinsFrame())));
-        LanguageExecutable languageExecutable = new LanguageExecutable(ioManager, interpreter);
+        ExecutionEngine executionEngine = useVirtualMachine
+                ? new VirtualMachine(ioManager, new Frame(BuiltinsFrame.INSTANCE), foldsConstants)
+                : new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)), null, foldsConstants);
+        LanguageExecutable languageExecutable = new LanguageExecutable(ioManager, executionEngine,
+                useAstCache ? AstCache.inDefaultDirectory() : null, replLimit);
         if (args.length == 1) {
             File sourceFile = new File(args[0]);
             assertFileExists(sourceFile);
@@ -38,9 +76,37 @@ public class LanguageExecutable {
         }
     }
 
-    public LanguageExecutable(IoManager ioManager, Interpreter interpreter) {
+    public LanguageExecutable(IoManager ioManager, ExecutionEngine executionEngine) {
+        this(ioManager, executionEngine, null);
+    }
+
+    public LanguageExecutable(IoManager ioManager, ExecutionEngine executionEngine, AstCache astCache) {
+        this(ioManager, executionEngine, astCache, NO_REPL_LIMIT);
+    }
+
+    public LanguageExecutable(IoManager ioManager, ExecutionEngine executionEngine, AstCache astCache, int replLimit) {
         this.ioManager = ioManager;
-        this.interpreter = interpreter;
+        this.executionEngine = executionEngine;
+        this.astCache = astCache;
+        this.replLimit = replLimit;
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("Usage: " + EXECUTABLE_NAME + " [" + VIRTUAL_MACHINE_FLAG + "] [" + NO_CACHE_FLAG + "] ["
+                + NO_FOLD_FLAG + "] [" + REPL_LIMIT_FLAG + "characters] [script]");
+        System.exit(1);
+    }
+
+    private static int parseReplLimit(String characters) {
+        try {
+            int replLimit = Integer.parseInt(characters);
+            if (replLimit >= 0) {
+                return replLimit;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        exitWithUsage();
+        return NO_REPL_LIMIT;
     }
 
     private static void assertFileExists(File file) {
@@ -51,10 +117,68 @@ public class LanguageExecutable {
     }
 
     private void interpretFile(File sourceFile) {
+        CharSequence source = null;
         try {
-            String source = readFileContents(sourceFile);
-            interpreter.interpret(source);
+            source = ioManager.readSourceFile(sourceFile);
+        } catch (IOException e) {
+            System.err.println("Failed to read source file " + sourceFile);
+            System.exit(1);
+        }
+        try {
+            if (astCache == null) {
+                executionEngine.execute(source);
+            } else {
+                executeThroughCache(source);
+            }
         } catch (UnwindingException ignored) {
+        } catch (AstCache.CorruptEntryException e) {
+            ioManager.flush();
+            System.err.println("Failed to read cached expressions of " + sourceFile);
+            System.exit(1);
+        } finally {
+            ioManager.flush();
+        }
+    }
+
+    // Runs the cached expressions if the script has been run before, otherwise parses it while filling the cache
+    private void executeThroughCache(CharSequence source) {
+        String key = astCache.computeKey(source);
+        Iterator<Expression> cachedExpressions = astCache.load(key);
+        if (cachedExpressions != null) {
+            executionEngine.executeResolved(cachedExpressions);
+            return;
+        }
+        AstCache.Entry entry = astCache.startEntry(key);
+        if (entry == null) {
+            executionEngine.execute(source);
+            return;
+        }
+        Parser parser = new Parser(new Lexer(source, ioManager), ioManager);
+        ConstantFolder constantFolder = new ConstantFolder();
+        Resolver resolver = new Resolver();
+        boolean completed = false;
+        try {
+            executionEngine.executeResolved(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return parser.hasMoreExpressions();
+                }
+
+                @Override
+                public Expression next() {
+                    Expression expression = constantFolder.fold(parser.parseNextTopLevelExpression());
+                    resolver.resolve(expression);
+                    entry.add(expression);
+                    return expression;
+                }
+            });
+            completed = true;
+        } finally {
+            if (completed) {
+                entry.commit();
+            } else {
+                entry.abandon();
+            }
         }
     }
 
@@ -65,22 +189,25 @@ public class LanguageExecutable {
             // TODO: handle ctrl+d
             // TODO: allow unmatched braces/parens
             try {
-                List<NativeData> values = interpreter.interpret(source);
-                values.forEach(value -> ioManager.print(value.makeValueRepresentation() + "\n"));
+                List<NativeData> values = executionEngine.interpret(source);
+                values.forEach(this::printReplValue);
             } catch (UnwindingException ignored) {
             }
         }
     }
 
-    private static String readFileContents(File file) {
-        // TODO: this should be handled by the IoManager
-        String contents = null;
+    // Streams the value into the output, cutting it short once it passes the limit
+    private void printReplValue(NativeData value) {
+        Appendable output = ioManager.getAppendableOutput();
         try {
-            contents = Files.readString(Path.of(String.valueOf(file)));
+            try {
+                value.appendValueRepresentation(replLimit == NO_REPL_LIMIT ? output : new TruncatingAppendable(output, replLimit));
+            } catch (TruncatingAppendable.LimitReachedException e) {
+                output.append(TRUNCATION_MARKER);
+            }
+            output.append('\n');
         } catch (IOException e) {
-            System.err.println("Failed to read source file " + file);
-            System.exit(1);
+            throw new UncheckedIOException(e);
         }
-        return contents;
     }
 }
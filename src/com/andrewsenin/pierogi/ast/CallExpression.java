@@ -4,6 +4,8 @@ public class CallExpression extends LineNumbered implements Expression {
 
 	protected final Expression callee;
 	protected final java.util.List<Expression> arguments;
+	private boolean tailCall;
+	private int callSite;
 
 	public CallExpression(Expression callee, java.util.List<Expression> arguments) {
 		this(callee, arguments, 0);
@@ -20,6 +22,11 @@ public class CallExpression extends LineNumbered implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof CallExpression)) {
@@ -36,4 +43,20 @@ public class CallExpression extends LineNumbered implements Expression {
 	public java.util.List<Expression> getArguments() {
 		return arguments;
 	}
+
+	public boolean getTailCall() {
+		return tailCall;
+	}
+
+	public void setTailCall(boolean tailCall) {
+		this.tailCall = tailCall;
+	}
+
+	public int getCallSite() {
+		return callSite;
+	}
+
+	public void setCallSite(int callSite) {
+		this.callSite = callSite;
+	}
 }
\ No newline at end of file
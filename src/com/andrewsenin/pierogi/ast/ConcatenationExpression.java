@@ -15,6 +15,11 @@ public class ConcatenationExpression extends Binary implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof ConcatenationExpression)) {
@@ -4,6 +4,7 @@ public class DefinitionExpression extends LineNumbered implements Expression {
 
 	protected final String symbol;
 	protected final Expression definition;
+	private int slot;
 
 	public DefinitionExpression(String symbol, Expression definition) {
 		this(symbol, definition, 0);
@@ -20,6 +21,11 @@ public class DefinitionExpression extends LineNumbered implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof DefinitionExpression)) {
@@ -36,4 +42,12 @@ public class DefinitionExpression extends LineNumbered implements Expression {
 	public Expression getDefinition() {
 		return definition;
 	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
 }
\ No newline at end of file
@@ -4,5 +4,7 @@ public interface Expression {
 
     <T> T accept(AstVisitor<T> astVisitor);
 
+    double accept(NumericAstVisitor numericAstVisitor);
+
     boolean equals(Object object);
 }
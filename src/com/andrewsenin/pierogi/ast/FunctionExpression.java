@@ -4,6 +4,11 @@ public class FunctionExpression extends LineNumbered implements Expression {
 
 	protected final java.util.List<String> parameters;
 	protected final java.util.List<Expression> definition;
+	private int frameSize;
+	private int[] captureDepths;
+	private int[] captureSlots;
+	private int invocationCount;
+	private com.andrewsenin.pierogi.jit.CompiledBody compiledBody;
 
 	public FunctionExpression(java.util.List<String> parameters, java.util.List<Expression> definition) {
 		this(parameters, definition, 0);
@@ -20,6 +25,11 @@ public class FunctionExpression extends LineNumbered implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof FunctionExpression)) {
@@ -36,4 +46,44 @@ public class FunctionExpression extends LineNumbered implements Expression {
 	public java.util.List<Expression> getDefinition() {
 		return definition;
 	}
+
+	public int getFrameSize() {
+		return frameSize;
+	}
+
+	public void setFrameSize(int frameSize) {
+		this.frameSize = frameSize;
+	}
+
+	public int[] getCaptureDepths() {
+		return captureDepths;
+	}
+
+	public void setCaptureDepths(int[] captureDepths) {
+		this.captureDepths = captureDepths;
+	}
+
+	public int[] getCaptureSlots() {
+		return captureSlots;
+	}
+
+	public void setCaptureSlots(int[] captureSlots) {
+		this.captureSlots = captureSlots;
+	}
+
+	public int getInvocationCount() {
+		return invocationCount;
+	}
+
+	public void setInvocationCount(int invocationCount) {
+		this.invocationCount = invocationCount;
+	}
+
+	public com.andrewsenin.pierogi.jit.CompiledBody getCompiledBody() {
+		return compiledBody;
+	}
+
+	public void setCompiledBody(com.andrewsenin.pierogi.jit.CompiledBody compiledBody) {
+		this.compiledBody = compiledBody;
+	}
 }
\ No newline at end of file
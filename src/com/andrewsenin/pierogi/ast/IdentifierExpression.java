@@ -3,6 +3,8 @@ package com.andrewsenin.pierogi.ast;
 public class IdentifierExpression extends LineNumbered implements Expression {
 
 	protected final String symbol;
+	private int depth;
+	private int slot;
 
 	public IdentifierExpression(String symbol) {
 		this(symbol, 0);
@@ -18,6 +20,11 @@ public class IdentifierExpression extends LineNumbered implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof IdentifierExpression)) {
@@ -30,4 +37,20 @@ public class IdentifierExpression extends LineNumbered implements Expression {
 	public String getSymbol() {
 		return symbol;
 	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
 }
\ No newline at end of file
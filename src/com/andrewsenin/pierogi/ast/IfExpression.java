@@ -5,6 +5,8 @@ public class IfExpression extends LineNumbered implements Expression {
 	protected final Expression condition;
 	protected final java.util.List<Expression> consequent;
 	protected final java.util.List<Expression> alternative;
+	private int consequentFrameSize;
+	private int alternativeFrameSize;
 
 	public IfExpression(Expression condition, java.util.List<Expression> consequent, java.util.List<Expression> alternative) {
 		this(condition, consequent, alternative, 0);
@@ -22,6 +24,11 @@ public class IfExpression extends LineNumbered implements Expression {
 		return astVisitor.visit(this);
 	}
 
+	@Override
+	public double accept(NumericAstVisitor numericAstVisitor) {
+		return numericAstVisitor.visit(this);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (!(object instanceof IfExpression)) {
@@ -42,4 +49,20 @@ public class IfExpression extends LineNumbered implements Expression {
 	public java.util.List<Expression> getAlternative() {
 		return alternative;
 	}
+
+	public int getConsequentFrameSize() {
+		return consequentFrameSize;
+	}
+
+	public void setConsequentFrameSize(int consequentFrameSize) {
+		this.consequentFrameSize = consequentFrameSize;
+	}
+
+	public int getAlternativeFrameSize() {
+		return alternativeFrameSize;
+	}
+
+	public void setAlternativeFrameSize(int alternativeFrameSize) {
+		this.alternativeFrameSize = alternativeFrameSize;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.andrewsenin.pierogi.ast;
+
+public interface NumericAstVisitor {
+	double visit(NilExpression nilExpression);
+	double visit(TrueExpression trueExpression);
+	double visit(FalseExpression falseExpression);
+	double visit(NumberExpression numberExpression);
+	double visit(StringExpression stringExpression);
+	double visit(ListExpression listExpression);
+	double visit(CallExpression callExpression);
+	double visit(IdentifierExpression identifierExpression);
+	double visit(DefinitionExpression definitionExpression);
+	double visit(IfExpression ifExpression);
+	double visit(FunctionExpression functionExpression);
+	double visit(GroupExpression groupExpression);
+	double visit(NegationExpression negationExpression);
+	double visit(NotExpression notExpression);
+	double visit(AdditionExpression additionExpression);
+	double visit(SubtractionExpression subtractionExpression);
+	double visit(MultiplicationExpression multiplicationExpression);
+	double visit(DivisionExpression divisionExpression);
+	double visit(ExponentExpression exponentExpression);
+	double visit(LessThanExpression lessThanExpression);
+	double visit(GreaterThanExpression greaterThanExpression);
+	double visit(LessEqualExpression lessEqualExpression);
+	double visit(GreaterEqualExpression greaterEqualExpression);
+	double visit(EqualsExpression equalsExpression);
+	double visit(NotEqualExpression notEqualExpression);
+	double visit(AndExpression andExpression);
+	double visit(OrExpression orExpression);
+	double visit(ConcatenationExpression concatenationExpression);
+	double visit(ConsExpression consExpression);
+}
\ No newline at end of file
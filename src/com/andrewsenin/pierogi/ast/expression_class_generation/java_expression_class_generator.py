@@ -65,6 +65,10 @@ def generate_field_comparisons(fields: Dict[str, str]) -> str:
     return " && ".join([comparison_template.format(name=field_name) for field_name in fields.keys()])
 
 
+def capitalize_field_name(field_name: str) -> str:
+    return field_name[0].upper() + field_name[1:]
+
+
 def generate_getter(field_name: str, field_type: str) -> str:
     getter_template = """\
 \tpublic {type} get{capitalized_name}() {{
@@ -72,7 +76,7 @@ def generate_getter(field_name: str, field_type: str) -> str:
 \t}}"""
     return getter_template.format(
         type=field_type,
-        capitalized_name=field_name.capitalize(),
+        capitalized_name=capitalize_field_name(field_name),
         name=field_name
     )
 
@@ -81,8 +85,33 @@ def generate_getters(fields: Dict[str, str]) -> str:
     return "\n\n".join([generate_getter(field_name, field_type) for field_name, field_type in fields.items()])
 
 
-def generate_visitors(class_names: List[str]) -> str:
-    visitor_template = "T visit({name} {uncapitalized_name});"
+def generate_annotation_fields(annotations: Dict[str, str]) -> str:
+    field_template = "\tprivate {type} {name};"
+    return "\n".join([field_template.format(type=field_type, name=field_name) for field_name, field_type in annotations.items()])
+
+
+def generate_setter(field_name: str, field_type: str) -> str:
+    setter_template = """\
+\tpublic void set{capitalized_name}({type} {name}) {{
+\t\tthis.{name} = {name};
+\t}}"""
+    return setter_template.format(
+        type=field_type,
+        capitalized_name=capitalize_field_name(field_name),
+        name=field_name
+    )
+
+
+def generate_annotation_accessors(annotations: Dict[str, str]) -> str:
+    accessors = []
+    for field_name, field_type in annotations.items():
+        accessors.append(generate_getter(field_name, field_type))
+        accessors.append(generate_setter(field_name, field_type))
+    return "\n\n".join(accessors)
+
+
+def generate_visitors(class_names: List[str], return_type: str = "T") -> str:
+    visitor_template = return_type + " visit({name} {uncapitalized_name});"
     return "\n\t".join([
         visitor_template.format(
             name=class_name,
@@ -104,6 +133,19 @@ public interface AstVisitor<T> {{
         ))
 
 
+def generate_numeric_visitor_class_file(class_names: List[str], output_path: pathlib.Path) -> None:
+    visitor_class_template = """\
+package com.andrewsenin.pierogi.ast;
+
+public interface NumericAstVisitor {{
+\t{visitors}
+}}"""
+    with open(output_path.joinpath("NumericAstVisitor.java"), "w") as visitor_file:
+        visitor_file.write(visitor_class_template.format(
+            visitors=generate_visitors(class_names, "double")
+        ))
+
+
 def read_description_file(path: pathlib.Path) -> str:
     with open(path, "r") as description_file:
         return description_file.read()
@@ -117,9 +159,13 @@ def parse_class_field_description(line_split: List[str]) -> Dict[str, str]:
     return {field_name: field_type for field_name, field_type in zip(line_split[3::2], line_split[2::2])}
 
 
-def parse_class_descriptions(descriptions: str) -> (Dict[str, Dict[str, str]], Dict[str, str], Dict[str, str]):
+def split_description_lines(descriptions: str) -> List[str]:
     lines = descriptions.split("\n")
-    lines = list(filter(lambda line: line != "", lines))
+    return list(filter(lambda line: line != "", lines))
+
+
+def parse_class_descriptions(descriptions: str) -> (Dict[str, Dict[str, str]], Dict[str, str], Dict[str, str]):
+    lines = split_description_lines(descriptions)
     unique_classes = {}
     base_classes = {}
     derived_classes = {}
@@ -127,6 +173,8 @@ def parse_class_descriptions(descriptions: str) -> (Dict[str, Dict[str, str]], D
         line_split = line.split()
         class_type = line_split[0]
         class_name = line_split[1]
+        if class_type == "annotation":
+            continue
         if class_type == "unique":
             unique_classes[normalize_class_name(class_name)] = parse_class_field_description(line_split)
         elif class_type == "base":
@@ -137,12 +185,21 @@ def parse_class_descriptions(descriptions: str) -> (Dict[str, Dict[str, str]], D
     return unique_classes, base_classes, derived_classes
 
 
+def parse_annotation_descriptions(descriptions: str) -> Dict[str, Dict[str, str]]:
+    annotations = {}
+    for line in split_description_lines(descriptions):
+        line_split = line.split()
+        if line_split[0] == "annotation":
+            annotations[normalize_class_name(line_split[1])] = parse_class_field_description(line_split)
+    return annotations
+
+
 def write_class_file(class_name: str, output_path: pathlib.Path, source: str) -> None:
     with open(output_path.joinpath(class_name + ".java"), "w") as java_file:
         java_file.write(source)
 
 
-def generate_unique_class_file(name: str, fields: Dict[str, str], output_path: pathlib.Path) -> None:
+def generate_unique_class_file(name: str, fields: Dict[str, str], annotations: Dict[str, str], output_path: pathlib.Path) -> None:
     java_class_template = """\
 package com.andrewsenin.pierogi.ast;
 
@@ -157,6 +214,11 @@ public class {class_name} extends LineNumbered implements Expression {{
 \t\treturn astVisitor.visit(this);
 \t}}
 
+\t@Override
+\tpublic double accept(NumericAstVisitor numericAstVisitor) {{
+\t\treturn numericAstVisitor.visit(this);
+\t}}
+
 \t@Override
 \tpublic boolean equals(Object object) {{
 \t\tif (!(object instanceof {class_name})) {{
@@ -168,12 +230,17 @@ public class {class_name} extends LineNumbered implements Expression {{
 
 {getters}
 }}"""
+    class_fields = generate_class_fields(fields)
+    getters = generate_getters(fields)
+    if len(annotations) != 0:
+        class_fields += "\n" + generate_annotation_fields(annotations)
+        getters += "\n\n" + generate_annotation_accessors(annotations)
     write_class_file(name, output_path, java_class_template.format(
         class_name=name,
-        fields=generate_class_fields(fields),
+        fields=class_fields,
         constructors=generate_constructors(name, fields),
         field_comparisons=generate_field_comparisons(fields),
-        getters=generate_getters(fields)
+        getters=getters
     ))
 
 
@@ -210,6 +277,11 @@ public class {class_name} extends {base_name} implements Expression {{
 \t\treturn astVisitor.visit(this);
 \t}}
 
+\t@Override
+\tpublic double accept(NumericAstVisitor numericAstVisitor) {{
+\t\treturn numericAstVisitor.visit(this);
+\t}}
+
 \t@Override
 \tpublic boolean equals(Object object) {{
 \t\tif (!(object instanceof {class_name})) {{
@@ -235,9 +307,10 @@ if __name__ == "__main__":
 
     class_descriptions = read_description_file(args.input_path)
     unique_classes, base_classes, derived_classes = parse_class_descriptions(class_descriptions)
+    annotations = parse_annotation_descriptions(class_descriptions)
 
     for name, fields in unique_classes.items():
-        generate_unique_class_file(name, fields, args.output_path)
+        generate_unique_class_file(name, fields, annotations.get(name, {}), args.output_path)
 
     for name, fields in base_classes.items():
         generate_base_class_file(name, fields, args.output_path)
@@ -246,3 +319,4 @@ if __name__ == "__main__":
         generate_derived_class_file(name, base, base_classes[base], args.output_path)
 
     generate_visitor_class_file(list(unique_classes.keys()) + list(derived_classes.keys()), args.output_path)
+    generate_numeric_visitor_class_file(list(unique_classes.keys()) + list(derived_classes.keys()), args.output_path)
@@ -25,6 +25,17 @@ derived Subtraction Binary
              "SubtractionExpression": "BinaryExpression"},
             derived_classes)
 
+    def test_annotation_parsing(self):
+        descriptions = """\
+unique Identifier String symbol
+annotation Identifier int depth int slot
+"""
+        unique_classes, _, _ = jecg.parse_class_descriptions(descriptions)
+        self.assertEqual({"IdentifierExpression": {"symbol": "String"}}, unique_classes)
+        self.assertEqual(
+            {"IdentifierExpression": {"depth": "int", "slot": "int"}},
+            jecg.parse_annotation_descriptions(descriptions))
+
 
 if __name__ == "__main__":
     unittest.main()
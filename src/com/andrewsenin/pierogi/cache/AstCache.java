@@ -0,0 +1,320 @@
+package com.andrewsenin.pierogi.cache;
+
+import com.andrewsenin.pierogi.LanguageExecutable;
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.io.MappedSource;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Keeps the resolved expressions of scripts on disk, in files named after a hash of the source and of everything about
+// the interpreter that the expressions depend on. A changed script or interpreter simply misses the cache
+public class AstCache {
+
+    private static final String CACHE_DIRECTORY_VARIABLE = "PIEROGI_CACHE_DIR";
+    private static final String FILE_EXTENSION = ".ast";
+    private static final int TRAILER_SIZE = 2 * Long.BYTES;
+    private static final String INTERPRETER_FINGERPRINT = makeInterpreterFingerprint(); // Null if it can't be known
+
+    private final Path directory;
+
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static AstCache inDefaultDirectory() {
+        String directory = System.getenv(CACHE_DIRECTORY_VARIABLE);
+        if (directory == null || directory.isEmpty()) {
+            return new AstCache(Path.of(System.getProperty("user.home"), ".cache", "pierogi"));
+        }
+        return new AstCache(Path.of(directory));
+    }
+
+    public String computeKey(CharSequence source) {
+        MessageDigest digest = makeDigest();
+        digest.update(String.valueOf(INTERPRETER_FINGERPRINT).getBytes(StandardCharsets.UTF_8));
+        if (source instanceof MappedSource) { // Hashes the UTF-8 straight from the file
+            digest.update(((MappedSource) source).getBytes());
+        } else {
+            digest.update(source.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    // Returns null if there is no usable entry for the key
+    public Iterator<Expression> load(String key) {
+        Path path = directory.resolve(key + FILE_EXTENSION);
+        if (INTERPRETER_FINGERPRINT == null || !Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            if (!isIntact(path)) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            AstReader reader = new AstReader(input);
+            if (!reader.readHeader(key)) {
+                input.close();
+                return null;
+            }
+            return new EntryIterator(path, input, reader);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Returns null if the cache directory can't be written to, or if the interpreter has no fingerprint
+    public Entry startEntry(String key) {
+        if (INTERPRETER_FINGERPRINT == null) {
+            return null;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temporaryPath = Files.createTempFile(directory, key, ".tmp");
+            temporaryPath.toFile().deleteOnExit(); // In case the script exits before the entry is complete
+            CheckedOutputStream checkedOutput = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)), new CRC32());
+            DataOutputStream output = new DataOutputStream(checkedOutput);
+            AstWriter writer = new AstWriter(output);
+            writer.writeHeader(key);
+            return new Entry(directory.resolve(key + FILE_EXTENSION), temporaryPath, checkedOutput, output, writer);
+        } catch (IOException | UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    // An entry ends with the length and checksum of everything before them, so one that was cut short or damaged is
+    // turned away before any of its expressions run
+    private static boolean isIntact(Path path) throws IOException {
+        long length = Files.size(path) - TRAILER_SIZE;
+        if (length < 0) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            CRC32 checksum = new CRC32();
+            byte[] buffer = new byte[8192];
+            for (long remaining = length; remaining > 0; ) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    return false;
+                }
+                checksum.update(buffer, 0, read);
+                remaining -= read;
+            }
+            return input.readLong() == length && input.readLong() == checksum.getValue();
+        }
+    }
+
+    // The format version, the interpreter's own class files, the builtins resolved identifiers may point at, and the
+    // shape of every node class
+    private static String makeInterpreterFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(AstFormat.VERSION).append('\n');
+        String classFilesHash = hashClassFiles();
+        if (classFilesHash == null) {
+            return null;
+        }
+        fingerprint.append(classFilesHash).append('\n');
+        fingerprint.append(BuiltinsFrame.getSymbols()).append('\n');
+        for (Class<?> nodeClass : AstFormat.NODE_CLASSES) {
+            fingerprint.append(nodeClass.getName());
+            for (Class<?> type = nodeClass; type != Object.class; type = type.getSuperclass()) {
+                Field[] fields = type.getDeclaredFields();
+                Arrays.sort(fields, Comparator.comparing(Field::getName));
+                for (Field field : fields) {
+                    fingerprint.append(' ').append(field.getType().getName()).append(' ').append(field.getName());
+                }
+            }
+            fingerprint.append('\n');
+        }
+        return fingerprint.toString();
+    }
+
+    // Hashes the jar or the directory of class files the interpreter was loaded from, so any rebuild that changes the
+    // interpreter misses entries written by the previous one. Null for an interpreter loaded from anywhere else, which
+    // doesn't cache. Plain files and a checksum keep this cheap while the JVM is starting up
+    private static String hashClassFiles() {
+        try {
+            CodeSource codeSource = LanguageExecutable.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                return null;
+            }
+            File location = new File(codeSource.getLocation().toURI());
+            CRC32 checksum = new CRC32();
+            if (location.isFile()) {
+                try (InputStream input = new FileInputStream(location)) {
+                    checksum.update(input.readAllBytes());
+                }
+            } else {
+                addClassFiles(new File(location, LanguageExecutable.class.getPackageName().replace('.', File.separatorChar)), checksum);
+            }
+            return Long.toHexString(checksum.getValue());
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void addClassFiles(File directory, CRC32 checksum) throws IOException {
+        String[] names = directory.list();
+        if (names == null) {
+            throw new IOException("Can't list " + directory);
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(directory, name);
+            checksum.update(name.getBytes(StandardCharsets.UTF_8));
+            if (file.isDirectory()) {
+                addClassFiles(file, checksum);
+            } else if (name.endsWith(".class")) {
+                try (InputStream input = new FileInputStream(file)) {
+                    checksum.update(input.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private static MessageDigest makeDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte hashByte : bytes) {
+            hex.append(Character.forDigit(hashByte >> 4 & 0xF, 16)).append(Character.forDigit(hashByte & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // Expressions are only moved into the cache once the whole script has been written
+    public static class Entry {
+
+        private final Path path;
+        private final Path temporaryPath;
+        private final CheckedOutputStream checkedOutput;
+        private final DataOutputStream output;
+        private final AstWriter writer;
+        private boolean failed = false;
+
+        private Entry(Path path, Path temporaryPath, CheckedOutputStream checkedOutput, DataOutputStream output, AstWriter writer) {
+            this.path = path;
+            this.temporaryPath = temporaryPath;
+            this.checkedOutput = checkedOutput;
+            this.output = output;
+            this.writer = writer;
+        }
+
+        public void add(Expression expression) {
+            if (failed) {
+                return;
+            }
+            try {
+                writer.writeTopLevelExpression(expression);
+            } catch (UncheckedIOException e) {
+                failed = true;
+            }
+        }
+
+        public void commit() {
+            if (failed) {
+                abandon();
+                return;
+            }
+            try {
+                writer.writeEnd();
+                long length = output.size();
+                long checksum = checkedOutput.getChecksum().getValue();
+                output.writeLong(length);
+                output.writeLong(checksum);
+                output.close();
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | UncheckedIOException e) {
+                abandon();
+            }
+        }
+
+        public void abandon() {
+            try {
+                output.close();
+                Files.deleteIfExists(temporaryPath);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public static class CorruptEntryException extends UncheckedIOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CorruptEntryException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    // Entries are checked whole before they are read, so this only fails if one changes on disk while it is being read.
+    // It is then deleted for the next run to replace
+    private static class EntryIterator implements Iterator<Expression> {
+
+        private final Path path;
+        private final DataInputStream input;
+        private final AstReader reader;
+        private Expression nextExpression;
+
+        private EntryIterator(Path path, DataInputStream input, AstReader reader) throws IOException {
+            this.path = path;
+            this.input = input;
+            this.reader = reader;
+            readNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextExpression != null;
+        }
+
+        @Override
+        public Expression next() {
+            if (nextExpression == null) {
+                throw new NoSuchElementException();
+            }
+            Expression expression = nextExpression;
+            try {
+                readNext();
+            } catch (IOException e) {
+                throw new CorruptEntryException(e);
+            }
+            return expression;
+        }
+
+        private void readNext() throws IOException {
+            try {
+                nextExpression = reader.readTopLevelExpression();
+                if (nextExpression == null) {
+                    input.close();
+                }
+            } catch (IOException e) {
+                input.close();
+                Files.deleteIfExists(path);
+                throw e;
+            }
+        }
+    }
+}
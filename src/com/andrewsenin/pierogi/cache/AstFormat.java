@@ -0,0 +1,67 @@
+package com.andrewsenin.pierogi.cache;
+
+import com.andrewsenin.pierogi.ast.*;
+
+import java.util.List;
+
+// Layout of the binary AST cache files: a header, then each top level expression in prefix order, one tag byte per
+// node, then an end marker followed by the length and CRC-32 of everything before them. Integers other than those in
+// the header and trailer are variable length
+public final class AstFormat {
+
+    public static final int MAGIC = 0x50474153; // "PGAS"
+    public static final int VERSION = 8;
+
+    public static final byte END = 0;
+    public static final byte EXPRESSION = 1;
+
+    // Symbols are written once and referred to by index afterwards, string literals are always written in full
+    public static final int NEW_SYMBOL = -1;
+    public static final int LITERAL = -2;
+
+    // Node tags, in the same order as NODE_CLASSES
+    public static final byte NIL = 0;
+    public static final byte TRUE = 1;
+    public static final byte FALSE = 2;
+    public static final byte NUMBER = 3;
+    public static final byte STRING = 4;
+    public static final byte LIST = 5;
+    public static final byte CALL = 6;
+    public static final byte GROUP = 7;
+    public static final byte NEGATION = 8;
+    public static final byte NOT = 9;
+    public static final byte ADDITION = 10;
+    public static final byte SUBTRACTION = 11;
+    public static final byte MULTIPLICATION = 12;
+    public static final byte DIVISION = 13;
+    public static final byte EXPONENT = 14;
+    public static final byte LESS_THAN = 15;
+    public static final byte GREATER_THAN = 16;
+    public static final byte LESS_EQUAL = 17;
+    public static final byte GREATER_EQUAL = 18;
+    public static final byte EQUALS = 19;
+    public static final byte NOT_EQUAL = 20;
+    public static final byte AND = 21;
+    public static final byte OR = 22;
+    public static final byte CONCATENATION = 23;
+    public static final byte CONS = 24;
+    public static final byte IDENTIFIER = 25;
+    public static final byte DEFINITION = 26;
+    public static final byte IF = 27;
+    public static final byte FUNCTION = 28;
+
+    public static final List<Class<? extends Expression>> NODE_CLASSES = List.of(
+            NilExpression.class, TrueExpression.class, FalseExpression.class, NumberExpression.class,
+            StringExpression.class, ListExpression.class, CallExpression.class,
+            GroupExpression.class, NegationExpression.class, NotExpression.class,
+            AdditionExpression.class, SubtractionExpression.class, MultiplicationExpression.class,
+            DivisionExpression.class, ExponentExpression.class, LessThanExpression.class, GreaterThanExpression.class,
+            LessEqualExpression.class, GreaterEqualExpression.class, EqualsExpression.class,
+            NotEqualExpression.class, AndExpression.class, OrExpression.class, ConcatenationExpression.class,
+            ConsExpression.class, IdentifierExpression.class, DefinitionExpression.class, IfExpression.class,
+            FunctionExpression.class
+    );
+
+    private AstFormat() {
+    }
+}
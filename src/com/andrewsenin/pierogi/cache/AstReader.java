@@ -0,0 +1,199 @@
+package com.andrewsenin.pierogi.cache;
+
+import com.andrewsenin.pierogi.ast.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back what AstWriter wrote, restoring the resolver annotations so the expressions can be run right away
+public class AstReader {
+
+    private final DataInputStream input;
+    private final List<String> symbols = new ArrayList<>();
+
+    public AstReader(DataInputStream input) {
+        this.input = input;
+    }
+
+    // Whether the input was written in the current format for the given key
+    public boolean readHeader(String key) throws IOException {
+        return input.readInt() == AstFormat.MAGIC && input.readInt() == AstFormat.VERSION && key.equals(readLiteral());
+    }
+
+    // Returns null once the last top level expression has been read
+    public Expression readTopLevelExpression() throws IOException {
+        byte marker = input.readByte();
+        if (marker == AstFormat.END) {
+            return null;
+        }
+        if (marker != AstFormat.EXPRESSION) {
+            throw new IOException("Corrupt AST cache entry");
+        }
+        return readExpression();
+    }
+
+    private Expression readExpression() throws IOException {
+        byte tag = input.readByte();
+        int lineNumber = readInt();
+        switch (tag) {
+            case AstFormat.NIL:
+                return new NilExpression(lineNumber);
+            case AstFormat.TRUE:
+                return new TrueExpression(lineNumber);
+            case AstFormat.FALSE:
+                return new FalseExpression(lineNumber);
+            case AstFormat.NUMBER:
+                return new NumberExpression(input.readDouble(), lineNumber);
+            case AstFormat.STRING:
+                return new StringExpression(readLiteral(), lineNumber);
+            case AstFormat.LIST:
+                return new ListExpression(readExpressions(), lineNumber);
+            case AstFormat.CALL: {
+                boolean tailCall = input.readBoolean();
+                int callSite = readInt();
+                CallExpression callExpression = new CallExpression(readExpression(), readExpressions(), lineNumber);
+                callExpression.setTailCall(tailCall);
+                callExpression.setCallSite(callSite);
+                return callExpression;
+            }
+            case AstFormat.GROUP:
+                return new GroupExpression(readExpression(), lineNumber);
+            case AstFormat.NEGATION:
+                return new NegationExpression(readExpression(), lineNumber);
+            case AstFormat.NOT:
+                return new NotExpression(readExpression(), lineNumber);
+            case AstFormat.ADDITION:
+                return new AdditionExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.SUBTRACTION:
+                return new SubtractionExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.MULTIPLICATION:
+                return new MultiplicationExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.DIVISION:
+                return new DivisionExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.EXPONENT:
+                return new ExponentExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.LESS_THAN:
+                return new LessThanExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.GREATER_THAN:
+                return new GreaterThanExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.LESS_EQUAL:
+                return new LessEqualExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.GREATER_EQUAL:
+                return new GreaterEqualExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.EQUALS:
+                return new EqualsExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.NOT_EQUAL:
+                return new NotEqualExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.AND:
+                return new AndExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.OR:
+                return new OrExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.CONCATENATION:
+                return new ConcatenationExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.CONS:
+                return new ConsExpression(readExpression(), readExpression(), lineNumber);
+            case AstFormat.IDENTIFIER: {
+                IdentifierExpression identifierExpression = new IdentifierExpression(readSymbol(), lineNumber);
+                identifierExpression.setDepth(readInt());
+                identifierExpression.setSlot(readInt());
+                return identifierExpression;
+            }
+            case AstFormat.DEFINITION: {
+                String symbol = readSymbol();
+                int slot = readInt();
+                DefinitionExpression definitionExpression = new DefinitionExpression(symbol, readExpression(), lineNumber);
+                definitionExpression.setSlot(slot);
+                return definitionExpression;
+            }
+            case AstFormat.IF: {
+                int consequentFrameSize = readInt();
+                int alternativeFrameSize = readInt();
+                IfExpression ifExpression = new IfExpression(readExpression(), readExpressions(), readExpressions(), lineNumber);
+                ifExpression.setConsequentFrameSize(consequentFrameSize);
+                ifExpression.setAlternativeFrameSize(alternativeFrameSize);
+                return ifExpression;
+            }
+            case AstFormat.FUNCTION: {
+                int frameSize = readInt();
+                int[] captureDepths = readInts();
+                int[] captureSlots = readInts();
+                int parameterCount = readInt();
+                List<String> parameters = new ArrayList<>(parameterCount);
+                for (int i = 0; i < parameterCount; i++) {
+                    parameters.add(readSymbol());
+                }
+                FunctionExpression functionExpression = new FunctionExpression(parameters, readExpressions(), lineNumber);
+                functionExpression.setFrameSize(frameSize);
+                functionExpression.setCaptureDepths(captureDepths);
+                functionExpression.setCaptureSlots(captureSlots);
+                return functionExpression;
+            }
+            default:
+                throw new IOException("Corrupt AST cache entry");
+        }
+    }
+
+    private List<Expression> readExpressions() throws IOException {
+        int size = readInt();
+        List<Expression> expressions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private int[] readInts() throws IOException {
+        int[] values = new int[readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readInt();
+        }
+        return values;
+    }
+
+    private int readInt() throws IOException {
+        int encoded = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte encodedByte = input.readByte();
+            if (shift > 28) {
+                throw new IOException("Corrupt AST cache entry");
+            }
+            encoded |= (encodedByte & 0x7F) << shift;
+            if (encodedByte >= 0) {
+                return encoded >>> 1 ^ -(encoded & 1);
+            }
+        }
+    }
+
+    private String readSymbol() throws IOException {
+        int index = readInt();
+        if (index == AstFormat.NEW_SYMBOL) {
+            String symbol = readStringBytes();
+            symbols.add(symbol);
+            return symbol;
+        }
+        if (index < 0 || index >= symbols.size()) {
+            throw new IOException("Corrupt AST cache entry");
+        }
+        return symbols.get(index);
+    }
+
+    private String readLiteral() throws IOException {
+        if (readInt() != AstFormat.LITERAL) {
+            throw new IOException("Corrupt AST cache entry");
+        }
+        return readStringBytes();
+    }
+
+    private String readStringBytes() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt AST cache entry");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
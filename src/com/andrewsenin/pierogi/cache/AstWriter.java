@@ -0,0 +1,326 @@
+package com.andrewsenin.pierogi.cache;
+
+import com.andrewsenin.pierogi.ast.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes resolved expressions along with their resolver annotations
+public class AstWriter implements AstVisitor<Void> {
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> symbolIndices = new HashMap<>();
+
+    public AstWriter(DataOutputStream output) {
+        this.output = output;
+    }
+
+    public void writeHeader(String key) {
+        try {
+            output.writeInt(AstFormat.MAGIC);
+            output.writeInt(AstFormat.VERSION);
+            writeLiteral(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void writeTopLevelExpression(Expression expression) {
+        writeByte(AstFormat.EXPRESSION);
+        write(expression);
+    }
+
+    public void writeEnd() {
+        writeByte(AstFormat.END);
+    }
+
+    @Override
+    public Void visit(NilExpression nilExpression) {
+        writeNode(AstFormat.NIL, nilExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(TrueExpression trueExpression) {
+        writeNode(AstFormat.TRUE, trueExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(FalseExpression falseExpression) {
+        writeNode(AstFormat.FALSE, falseExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(NumberExpression numberExpression) {
+        writeNode(AstFormat.NUMBER, numberExpression);
+        try {
+            output.writeDouble(numberExpression.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(StringExpression stringExpression) {
+        writeNode(AstFormat.STRING, stringExpression);
+        writeLiteral(stringExpression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(ListExpression listExpression) {
+        writeNode(AstFormat.LIST, listExpression);
+        writeExpressions(listExpression.getContents());
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression callExpression) {
+        writeNode(AstFormat.CALL, callExpression);
+        writeBoolean(callExpression.getTailCall());
+        writeInt(callExpression.getCallSite());
+        write(callExpression.getCallee());
+        writeExpressions(callExpression.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visit(GroupExpression groupExpression) {
+        writeUnary(AstFormat.GROUP, groupExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(NegationExpression negationExpression) {
+        writeUnary(AstFormat.NEGATION, negationExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(NotExpression notExpression) {
+        writeUnary(AstFormat.NOT, notExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(AdditionExpression additionExpression) {
+        writeBinary(AstFormat.ADDITION, additionExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(SubtractionExpression subtractionExpression) {
+        writeBinary(AstFormat.SUBTRACTION, subtractionExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(MultiplicationExpression multiplicationExpression) {
+        writeBinary(AstFormat.MULTIPLICATION, multiplicationExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(DivisionExpression divisionExpression) {
+        writeBinary(AstFormat.DIVISION, divisionExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(ExponentExpression exponentExpression) {
+        writeBinary(AstFormat.EXPONENT, exponentExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(LessThanExpression lessThanExpression) {
+        writeBinary(AstFormat.LESS_THAN, lessThanExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(GreaterThanExpression greaterThanExpression) {
+        writeBinary(AstFormat.GREATER_THAN, greaterThanExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(LessEqualExpression lessEqualExpression) {
+        writeBinary(AstFormat.LESS_EQUAL, lessEqualExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(GreaterEqualExpression greaterEqualExpression) {
+        writeBinary(AstFormat.GREATER_EQUAL, greaterEqualExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(EqualsExpression equalsExpression) {
+        writeBinary(AstFormat.EQUALS, equalsExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(NotEqualExpression notEqualExpression) {
+        writeBinary(AstFormat.NOT_EQUAL, notEqualExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(AndExpression andExpression) {
+        writeBinary(AstFormat.AND, andExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(OrExpression orExpression) {
+        writeBinary(AstFormat.OR, orExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConcatenationExpression concatenationExpression) {
+        writeBinary(AstFormat.CONCATENATION, concatenationExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConsExpression consExpression) {
+        writeBinary(AstFormat.CONS, consExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentifierExpression identifierExpression) {
+        writeNode(AstFormat.IDENTIFIER, identifierExpression);
+        writeSymbol(identifierExpression.getSymbol());
+        writeInt(identifierExpression.getDepth());
+        writeInt(identifierExpression.getSlot());
+        return null;
+    }
+
+    @Override
+    public Void visit(DefinitionExpression definitionExpression) {
+        writeNode(AstFormat.DEFINITION, definitionExpression);
+        writeSymbol(definitionExpression.getSymbol());
+        writeInt(definitionExpression.getSlot());
+        write(definitionExpression.getDefinition());
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression ifExpression) {
+        writeNode(AstFormat.IF, ifExpression);
+        writeInt(ifExpression.getConsequentFrameSize());
+        writeInt(ifExpression.getAlternativeFrameSize());
+        write(ifExpression.getCondition());
+        writeExpressions(ifExpression.getConsequent());
+        writeExpressions(ifExpression.getAlternative());
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        writeNode(AstFormat.FUNCTION, functionExpression);
+        writeInt(functionExpression.getFrameSize());
+        writeInts(functionExpression.getCaptureDepths());
+        writeInts(functionExpression.getCaptureSlots());
+        writeInt(functionExpression.getParameters().size());
+        functionExpression.getParameters().forEach(this::writeSymbol);
+        writeExpressions(functionExpression.getDefinition());
+        return null;
+    }
+
+    private void write(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void writeNode(byte tag, LineNumbered node) {
+        writeByte(tag);
+        writeInt(node.getLineNumber());
+    }
+
+    private <T extends Unary & Expression> void writeUnary(byte tag, T expression) {
+        writeNode(tag, expression);
+        write(expression.getInside());
+    }
+
+    private <T extends Binary & Expression> void writeBinary(byte tag, T expression) {
+        writeNode(tag, expression);
+        write(expression.getLeft());
+        write(expression.getRight());
+    }
+
+    private void writeExpressions(List<Expression> expressions) {
+        writeInt(expressions.size());
+        expressions.forEach(this::write);
+    }
+
+    private void writeInts(int[] values) {
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    private void writeSymbol(String symbol) {
+        Integer index = symbolIndices.get(symbol);
+        if (index != null) {
+            writeInt(index);
+            return;
+        }
+        symbolIndices.put(symbol, symbolIndices.size());
+        writeString(AstFormat.NEW_SYMBOL, symbol);
+    }
+
+    private void writeLiteral(String value) {
+        writeString(AstFormat.LITERAL, value);
+    }
+
+    private void writeString(int marker, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(marker);
+        writeInt(bytes.length);
+        try {
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBoolean(boolean value) {
+        writeByte(value ? (byte) 1 : (byte) 0);
+    }
+
+    private void writeByte(byte value) {
+        try {
+            output.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Zigzag encoded so that small negative values stay short too, then written seven bits at a time
+    private void writeInt(int value) {
+        int encoded = value << 1 ^ value >> 31;
+        try {
+            while ((encoded & ~0x7F) != 0) {
+                output.writeByte(encoded & 0x7F | 0x80);
+                encoded >>>= 7;
+            }
+            output.writeByte(encoded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
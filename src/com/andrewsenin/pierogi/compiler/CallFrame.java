@@ -0,0 +1,48 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+import com.andrewsenin.pierogi.interpreter.Frame;
+
+// Saved state of a caller, along with the call site of the function it is waiting on
+public class CallFrame {
+
+    private Chunk chunk;
+    private int returnAddress;
+    private Frame frame;
+    private int stackPointer;
+    private NativeFunction callee;
+    private int callLineNumber;
+
+    public void save(Chunk chunk, int returnAddress, Frame frame, int stackPointer, NativeFunction callee, int callLineNumber) {
+        this.chunk = chunk;
+        this.returnAddress = returnAddress;
+        this.frame = frame;
+        this.stackPointer = stackPointer;
+        this.callee = callee;
+        this.callLineNumber = callLineNumber;
+    }
+
+    public Chunk getChunk() {
+        return chunk;
+    }
+
+    public int getReturnAddress() {
+        return returnAddress;
+    }
+
+    public Frame getFrame() {
+        return frame;
+    }
+
+    public int getStackPointer() {
+        return stackPointer;
+    }
+
+    public NativeFunction getCallee() {
+        return callee;
+    }
+
+    public int getCallLineNumber() {
+        return callLineNumber;
+    }
+}
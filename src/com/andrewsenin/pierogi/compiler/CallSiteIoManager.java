@@ -0,0 +1,101 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.interpreter.CallContextIoManager;
+import com.andrewsenin.pierogi.interpreter.ExecutionLimits;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+
+import java.io.File;
+import java.io.IOException;
+
+// Handed to the builtins a virtual machine calls; the function scopes of its call stack are only assembled if an
+// error is reported
+public class CallSiteIoManager implements CallContextIoManager {
+
+    private final VirtualMachine virtualMachine;
+    private final IoManager ioManager;
+
+    public CallSiteIoManager(VirtualMachine virtualMachine, IoManager ioManager) {
+        this.virtualMachine = virtualMachine;
+        this.ioManager = ioManager;
+    }
+
+    public VirtualMachine getVirtualMachine() {
+        return virtualMachine;
+    }
+
+    @Override
+    public ExecutionLimits getExecutionLimits() {
+        return virtualMachine.getExecutionLimits();
+    }
+
+    @Override
+    public int getCallDepth() {
+        return virtualMachine.getCallDepth();
+    }
+
+    @Override
+    public void consumeSteps(long steps) {
+        virtualMachine.consumeSteps(steps, this);
+    }
+
+    @Override
+    public void print(String message) {
+        ioManager.print(message);
+    }
+
+    @Override
+    public void printLine(String message) {
+        ioManager.printLine(message);
+    }
+
+    @Override
+    public Appendable getAppendableOutput() {
+        return ioManager.getAppendableOutput();
+    }
+
+    @Override
+    public Object getOutputLock() {
+        return ioManager.getOutputLock();
+    }
+
+    @Override
+    public void flush() {
+        ioManager.flush();
+    }
+
+    @Override
+    public String requestInput() {
+        return ioManager.requestInput();
+    }
+
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return ioManager.readSourceFile(file);
+    }
+
+    @Override
+    public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
+        return makeErrorContext().reportStaticError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType) {
+        return makeErrorContext().reportRuntimeError(errorType);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType, String near, int lineNumber) {
+        return makeErrorContext().reportRuntimeError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public void recordFunctionScope(String functionName, int lineNumber) {
+        ioManager.recordFunctionScope(functionName, lineNumber);
+    }
+
+    private IoManager makeErrorContext() {
+        return virtualMachine.makeErrorContext();
+    }
+}
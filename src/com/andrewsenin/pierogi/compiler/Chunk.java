@@ -0,0 +1,40 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+
+public class Chunk {
+
+    private final int[] code;
+    private final NativeData[] constants;
+    private final FunctionPrototype[] prototypes;
+    private final String[] siteNames;
+    private final int[] siteLineNumbers;
+
+    public Chunk(int[] code, NativeData[] constants, FunctionPrototype[] prototypes, String[] siteNames, int[] siteLineNumbers) {
+        this.code = code;
+        this.constants = constants;
+        this.prototypes = prototypes;
+        this.siteNames = siteNames;
+        this.siteLineNumbers = siteLineNumbers;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public NativeData getConstant(int index) {
+        return constants[index];
+    }
+
+    public FunctionPrototype getPrototype(int index) {
+        return prototypes[index];
+    }
+
+    public String getSiteName(int site) {
+        return siteNames[site];
+    }
+
+    public int getSiteLineNumber(int site) {
+        return siteLineNumbers[site];
+    }
+}
@@ -0,0 +1,56 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChunkBuilder {
+
+    private final List<Integer> code = new ArrayList<>();
+    private final List<NativeData> constants = new ArrayList<>();
+    private final List<FunctionPrototype> prototypes = new ArrayList<>();
+    private final List<String> siteNames = new ArrayList<>();
+    private final List<Integer> siteLineNumbers = new ArrayList<>();
+
+    public void emit(int opCode, int... operands) {
+        code.add(opCode);
+        for (int operand : operands) {
+            code.add(operand);
+        }
+    }
+
+    public int addConstant(NativeData constant) {
+        constants.add(constant);
+        return constants.size() - 1;
+    }
+
+    public int addPrototype(FunctionPrototype prototype) {
+        prototypes.add(prototype);
+        return prototypes.size() - 1;
+    }
+
+    public int addSite(String name, int lineNumber) {
+        siteNames.add(name);
+        siteLineNumbers.add(lineNumber);
+        return siteNames.size() - 1;
+    }
+
+    public int getCurrentOffset() {
+        return code.size();
+    }
+
+    public void patch(int offset, int value) {
+        code.set(offset, value);
+    }
+
+    public Chunk build() {
+        return new Chunk(
+                code.stream().mapToInt(Integer::intValue).toArray(),
+                constants.toArray(new NativeData[0]),
+                prototypes.toArray(new FunctionPrototype[0]),
+                siteNames.toArray(new String[0]),
+                siteLineNumbers.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+}
@@ -0,0 +1,55 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.io.IoManager;
+
+import java.util.List;
+
+public class CompiledFunction extends NativeFunction {
+
+    private final FunctionPrototype prototype;
+    private final Frame closure;
+
+    public CompiledFunction(FunctionPrototype prototype, Frame closure) {
+        this.prototype = prototype;
+        this.closure = closure;
+    }
+
+    public FunctionPrototype getPrototype() {
+        return prototype;
+    }
+
+    public Frame getClosure() {
+        return closure;
+    }
+
+    // Called once the function has been defined into the slot
+    public void bindToOwnSlot(int slot) {
+        closure.bindCapturesOfOwnSlot(prototype.getCaptureDepths(), prototype.getCaptureSlots(), slot, this);
+    }
+
+    @Override
+    public NativeData call(List<NativeData> arguments, IoManager ioManager) {
+        if (ioManager instanceof CallSiteIoManager) { // Called back by a builtin, so keep to the caller's virtual machine
+            return ((CallSiteIoManager) ioManager).getVirtualMachine().callBack(this, arguments);
+        }
+        return VirtualMachine.inCallContext(ioManager, closure).call(this, arguments);
+    }
+
+    @Override
+    public int getArity() {
+        return prototype.getArity();
+    }
+
+    @Override
+    public String makeValueRepresentation() {
+        return "<function/" + getArity() + ">";
+    }
+
+    @Override
+    public String makePrintRepresentation() {
+        return makeValueRepresentation();
+    }
+}
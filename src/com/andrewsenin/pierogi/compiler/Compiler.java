@@ -0,0 +1,331 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.datatypes.NativeNumber;
+import com.andrewsenin.pierogi.datatypes.NativeString;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.resolver.Resolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Compiler implements AstVisitor<Void> {
+
+    private final ChunkBuilder builder = new ChunkBuilder();
+    // Whether each block being compiled in this function has a frame of its own, innermost last. Blocks that define
+    // nothing get none, so addresses from the resolver skip them
+    private final List<Boolean> blockHasFrame = new ArrayList<>();
+
+    // Expressions must have been resolved
+    public static Chunk compile(Expression expression) {
+        Compiler compiler = new Compiler();
+        compiler.compileExpression(expression);
+        compiler.builder.emit(OpCode.RETURN);
+        return compiler.builder.build();
+    }
+
+    private static FunctionPrototype compileFunction(FunctionExpression functionExpression, int[] captureDepths) {
+        Compiler compiler = new Compiler();
+        compiler.compileBlock(functionExpression.getDefinition());
+        compiler.builder.emit(OpCode.RETURN);
+        return new FunctionPrototype(
+                functionExpression.getParameters().size(),
+                functionExpression.getFrameSize(),
+                captureDepths,
+                functionExpression.getCaptureSlots(),
+                compiler.builder.build()
+        );
+    }
+
+    @Override
+    public Void visit(NilExpression nilExpression) {
+        builder.emit(OpCode.NIL);
+        return null;
+    }
+
+    @Override
+    public Void visit(TrueExpression trueExpression) {
+        builder.emit(OpCode.TRUE);
+        return null;
+    }
+
+    @Override
+    public Void visit(FalseExpression falseExpression) {
+        builder.emit(OpCode.FALSE);
+        return null;
+    }
+
+    @Override
+    public Void visit(NumberExpression numberExpression) {
+        builder.emit(OpCode.CONSTANT, addNumberConstant(numberExpression));
+        return null;
+    }
+
+    @Override
+    public Void visit(StringExpression stringExpression) {
+        builder.emit(OpCode.CONSTANT, builder.addConstant(new NativeString(stringExpression.getValue())));
+        return null;
+    }
+
+    @Override
+    public Void visit(ListExpression listExpression) {
+        listExpression.getContents().forEach(this::compileExpression);
+        builder.emit(OpCode.LIST, listExpression.getContents().size());
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression callExpression) {
+        int site = addSite(callExpression);
+        int argumentCount = callExpression.getArguments().size();
+        compileExpression(callExpression.getCallee());
+        builder.emit(OpCode.CHECK_CALL, argumentCount, site, callExpression.getCallSite());
+        callExpression.getArguments().forEach(this::compileExpression);
+        builder.emit(callExpression.getTailCall() ? OpCode.TAIL_CALL : OpCode.CALL, argumentCount, site);
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentifierExpression identifierExpression) {
+        int site = builder.addSite(identifierExpression.getSymbol(), identifierExpression.getLineNumber());
+        if (identifierExpression.getDepth() == Resolver.UNRESOLVED_DEPTH) {
+            builder.emit(OpCode.UNDEFINED, site);
+        } else if (identifierExpression.getDepth() == Resolver.BUILTIN_DEPTH) {
+            builder.emit(OpCode.CONSTANT, builder.addConstant(BuiltinsFrame.lookUpBuiltinAt(identifierExpression.getSlot())));
+        } else {
+            int depth = toFrameDepth(identifierExpression.getDepth());
+            if (depth == 0) {
+                builder.emit(OpCode.LOAD_LOCAL, identifierExpression.getSlot(), site);
+            } else {
+                builder.emit(OpCode.LOAD, depth, identifierExpression.getSlot(), site);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(DefinitionExpression definitionExpression) {
+        compileExpression(definitionExpression.getDefinition());
+        boolean definesFunction = definitionExpression.getDefinition() instanceof FunctionExpression;
+        builder.emit(definesFunction ? OpCode.STORE_FUNCTION : OpCode.STORE, definitionExpression.getSlot());
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression ifExpression) {
+        compileExpression(ifExpression.getCondition());
+        int alternativeJump = emitJump(OpCode.JUMP_IF_FALSE, addSite(ifExpression));
+        compileFramedBlock(ifExpression.getConsequent(), ifExpression.getConsequentFrameSize());
+        int endJump = emitJump(OpCode.JUMP);
+        patchJump(alternativeJump);
+        compileFramedBlock(ifExpression.getAlternative(), ifExpression.getAlternativeFrameSize());
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        int[] captureDepths = functionExpression.getCaptureDepths().clone();
+        for (int i = 0; i < captureDepths.length; i++) {
+            captureDepths[i] = toFrameDepth(captureDepths[i]);
+        }
+        builder.emit(OpCode.FUNCTION, builder.addPrototype(compileFunction(functionExpression, captureDepths)));
+        return null;
+    }
+
+    @Override
+    public Void visit(GroupExpression groupExpression) {
+        compileExpression(groupExpression.getInside());
+        return null;
+    }
+
+    @Override
+    public Void visit(NegationExpression negationExpression) {
+        compileExpression(negationExpression.getInside());
+        builder.emit(OpCode.NEGATE, addSite(negationExpression));
+        return null;
+    }
+
+    @Override
+    public Void visit(NotExpression notExpression) {
+        compileExpression(notExpression.getInside());
+        builder.emit(OpCode.NOT, addSite(notExpression));
+        return null;
+    }
+
+    @Override
+    public Void visit(AdditionExpression additionExpression) {
+        return compileBinary(additionExpression, OpCode.ADD, OpCode.ADD_CONSTANT);
+    }
+
+    @Override
+    public Void visit(SubtractionExpression subtractionExpression) {
+        return compileBinary(subtractionExpression, OpCode.SUBTRACT, OpCode.SUBTRACT_CONSTANT);
+    }
+
+    @Override
+    public Void visit(MultiplicationExpression multiplicationExpression) {
+        return compileBinary(multiplicationExpression, OpCode.MULTIPLY, OpCode.MULTIPLY_CONSTANT);
+    }
+
+    @Override
+    public Void visit(DivisionExpression divisionExpression) {
+        return compileBinary(divisionExpression, OpCode.DIVIDE);
+    }
+
+    @Override
+    public Void visit(ExponentExpression exponentExpression) {
+        return compileBinary(exponentExpression, OpCode.EXPONENT);
+    }
+
+    @Override
+    public Void visit(LessThanExpression lessThanExpression) {
+        return compileBinary(lessThanExpression, OpCode.LESS_THAN, OpCode.LESS_THAN_CONSTANT);
+    }
+
+    @Override
+    public Void visit(GreaterThanExpression greaterThanExpression) {
+        return compileBinary(greaterThanExpression, OpCode.GREATER_THAN, OpCode.GREATER_THAN_CONSTANT);
+    }
+
+    @Override
+    public Void visit(LessEqualExpression lessEqualExpression) {
+        return compileBinary(lessEqualExpression, OpCode.LESS_EQUAL, OpCode.LESS_EQUAL_CONSTANT);
+    }
+
+    @Override
+    public Void visit(GreaterEqualExpression greaterEqualExpression) {
+        return compileBinary(greaterEqualExpression, OpCode.GREATER_EQUAL, OpCode.GREATER_EQUAL_CONSTANT);
+    }
+
+    @Override
+    public Void visit(EqualsExpression equalsExpression) {
+        compileExpression(equalsExpression.getLeft());
+        if (equalsExpression.getRight() instanceof NumberExpression) {
+            builder.emit(OpCode.EQUALS_CONSTANT, addNumberConstant((NumberExpression) equalsExpression.getRight()));
+            return null;
+        }
+        compileExpression(equalsExpression.getRight());
+        builder.emit(OpCode.EQUALS);
+        return null;
+    }
+
+    @Override
+    public Void visit(NotEqualExpression notEqualExpression) {
+        compileExpression(notEqualExpression.getLeft());
+        if (notEqualExpression.getRight() instanceof NumberExpression) {
+            builder.emit(OpCode.NOT_EQUAL_CONSTANT, addNumberConstant((NumberExpression) notEqualExpression.getRight()));
+            return null;
+        }
+        compileExpression(notEqualExpression.getRight());
+        builder.emit(OpCode.NOT_EQUAL);
+        return null;
+    }
+
+    @Override
+    public Void visit(AndExpression andExpression) {
+        return compileShortCircuit(andExpression, OpCode.AND);
+    }
+
+    @Override
+    public Void visit(OrExpression orExpression) {
+        return compileShortCircuit(orExpression, OpCode.OR);
+    }
+
+    @Override
+    public Void visit(ConcatenationExpression concatenationExpression) {
+        return compileBinary(concatenationExpression, OpCode.CONCATENATE);
+    }
+
+    @Override
+    public Void visit(ConsExpression consExpression) {
+        return compileBinary(consExpression, OpCode.CONS);
+    }
+
+    private void compileExpression(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void compileBlock(List<Expression> block) {
+        for (int i = 0; i < block.size(); i++) {
+            if (i > 0) {
+                builder.emit(OpCode.POP);
+            }
+            compileExpression(block.get(i));
+        }
+    }
+
+    private void compileFramedBlock(List<Expression> block, int frameSize) {
+        boolean hasFrame = frameSize > 0;
+        blockHasFrame.add(hasFrame);
+        if (hasFrame) {
+            builder.emit(OpCode.PUSH_FRAME, frameSize);
+        }
+        compileBlock(block);
+        if (hasFrame) {
+            builder.emit(OpCode.POP_FRAME);
+        }
+        blockHasFrame.remove(blockHasFrame.size() - 1);
+    }
+
+    // Converts a depth counted in scopes to one counted in the frames that are actually pushed
+    private int toFrameDepth(int scopeDepth) {
+        int frameDepth = scopeDepth;
+        for (int i = 0; i < scopeDepth && i < blockHasFrame.size(); i++) {
+            if (!blockHasFrame.get(blockHasFrame.size() - 1 - i)) {
+                frameDepth--;
+            }
+        }
+        return frameDepth;
+    }
+
+    private <T extends LineNumbered & Expression> int addSite(T expression) {
+        return builder.addSite(expression.getClass().getSimpleName(), expression.getLineNumber());
+    }
+
+    private <T extends Binary & Expression> Void compileBinary(T expression, int opCode) {
+        compileExpression(expression.getLeft());
+        compileExpression(expression.getRight());
+        builder.emit(opCode, addSite(expression));
+        return null;
+    }
+
+    // A number on the right is read straight from the constant pool, which saves dispatching an instruction for it
+    private <T extends Binary & Expression> Void compileBinary(T expression, int opCode, int constantOpCode) {
+        if (!(expression.getRight() instanceof NumberExpression)) {
+            return compileBinary(expression, opCode);
+        }
+        compileExpression(expression.getLeft());
+        builder.emit(constantOpCode, addNumberConstant((NumberExpression) expression.getRight()), addSite(expression));
+        return null;
+    }
+
+    private int addNumberConstant(NumberExpression numberExpression) {
+        return builder.addConstant(NativeNumber.of(numberExpression.getValue()));
+    }
+
+    private <T extends Binary & Expression> Void compileShortCircuit(T expression, int opCode) {
+        int site = addSite(expression);
+        compileExpression(expression.getLeft());
+        int endJump = emitJump(opCode, site);
+        compileExpression(expression.getRight());
+        builder.emit(OpCode.CHECK_BOOL, site);
+        patchJump(endJump);
+        return null;
+    }
+
+    // Jumps return the offset of their target operand so that it can be patched once the target is known
+    private int emitJump(int opCode) {
+        builder.emit(opCode, 0);
+        return builder.getCurrentOffset() - 1;
+    }
+
+    private int emitJump(int opCode, int site) {
+        builder.emit(opCode, 0, site);
+        return builder.getCurrentOffset() - 2;
+    }
+
+    private void patchJump(int targetOperandOffset) {
+        builder.patch(targetOperandOffset, builder.getCurrentOffset());
+    }
+}
@@ -0,0 +1,38 @@
+package com.andrewsenin.pierogi.compiler;
+
+public class FunctionPrototype {
+
+    private final int arity;
+    private final int frameSize;
+    private final int[] captureDepths;
+    private final int[] captureSlots;
+    private final Chunk chunk;
+
+    public FunctionPrototype(int arity, int frameSize, int[] captureDepths, int[] captureSlots, Chunk chunk) {
+        this.arity = arity;
+        this.frameSize = frameSize;
+        this.captureDepths = captureDepths;
+        this.captureSlots = captureSlots;
+        this.chunk = chunk;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int[] getCaptureDepths() {
+        return captureDepths;
+    }
+
+    public int[] getCaptureSlots() {
+        return captureSlots;
+    }
+
+    public Chunk getChunk() {
+        return chunk;
+    }
+}
@@ -0,0 +1,61 @@
+package com.andrewsenin.pierogi.compiler;
+
+// Instructions are plain ints rather than an enum so that the virtual machine can switch on them directly
+public final class OpCode {
+
+    public static final int CONSTANT = 0; // constant index
+    public static final int NIL = 1;
+    public static final int TRUE = 2;
+    public static final int FALSE = 3;
+    public static final int LOAD = 4; // depth, slot, site
+    public static final int LOAD_LOCAL = 5; // slot, site
+    public static final int UNDEFINED = 6; // site
+    public static final int STORE = 7; // slot
+    public static final int STORE_FUNCTION = 8; // slot
+    public static final int POP = 9;
+    public static final int LIST = 10; // item count
+    public static final int PUSH_FRAME = 11; // frame size
+    public static final int POP_FRAME = 12;
+    public static final int FUNCTION = 13; // prototype index
+
+    public static final int NEGATE = 14; // site
+    public static final int NOT = 15; // site
+    public static final int ADD = 16; // site
+    public static final int SUBTRACT = 17; // site
+    public static final int MULTIPLY = 18; // site
+    public static final int DIVIDE = 19; // site
+    public static final int EXPONENT = 20; // site
+    public static final int LESS_THAN = 21; // site
+    public static final int GREATER_THAN = 22; // site
+    public static final int LESS_EQUAL = 23; // site
+    public static final int GREATER_EQUAL = 24; // site
+    public static final int EQUALS = 25;
+    public static final int NOT_EQUAL = 26;
+    public static final int CONCATENATE = 27; // site
+    public static final int CONS = 28; // site
+
+    // The same operations taking a number from the constant pool as their right operand
+    public static final int ADD_CONSTANT = 29; // constant index, site
+    public static final int SUBTRACT_CONSTANT = 30; // constant index, site
+    public static final int MULTIPLY_CONSTANT = 31; // constant index, site
+    public static final int LESS_THAN_CONSTANT = 32; // constant index, site
+    public static final int GREATER_THAN_CONSTANT = 33; // constant index, site
+    public static final int LESS_EQUAL_CONSTANT = 34; // constant index, site
+    public static final int GREATER_EQUAL_CONSTANT = 35; // constant index, site
+    public static final int EQUALS_CONSTANT = 36; // constant index
+    public static final int NOT_EQUAL_CONSTANT = 37; // constant index
+
+    public static final int JUMP = 38; // target
+    public static final int JUMP_IF_FALSE = 39; // target, site
+    public static final int AND = 40; // target, site
+    public static final int OR = 41; // target, site
+    public static final int CHECK_BOOL = 42; // site
+
+    public static final int CHECK_CALL = 43; // argument count, site, call site number
+    public static final int CALL = 44; // argument count, site
+    public static final int TAIL_CALL = 45; // argument count, site
+    public static final int RETURN = 46;
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,584 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.ExecutionEngine;
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.datatypes.*;
+import com.andrewsenin.pierogi.interpreter.CallContextIoManager;
+import com.andrewsenin.pierogi.interpreter.CallSiteCache;
+import com.andrewsenin.pierogi.interpreter.ExecutionLimits;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.FunctionIoManagerWrapper;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.optimizer.ConstantFolder;
+import com.andrewsenin.pierogi.resolver.Resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class VirtualMachine implements ExecutionEngine {
+
+    private static final int INITIAL_STACK_SIZE = 64;
+    private static final int INITIAL_CALL_DEPTH = 16;
+
+    private final IoManager ioManager;
+    private final Frame globalFrame;
+    private final Frame rootFrame;
+    private final boolean foldsConstants;
+    private final ExecutionLimits executionLimits;
+    private final int initialCallDepth;
+    private final int maxCallDepth; // Counted from the initial call depth
+    private final CallSiteCache callSiteCache = new CallSiteCache();
+    private final CallSiteIoManager callSiteIoManager;
+    private ConstantFolder constantFolder = null;
+    private Resolver resolver = null;
+    // Counts down with every step and is topped up from the execution limits once it runs out
+    private long stepsLeftInBatch;
+    // Popped slots are not cleared, they only keep their values reachable until overwritten
+    private NativeData[] stack = new NativeData[INITIAL_STACK_SIZE];
+    private CallFrame[] callFrames = new CallFrame[INITIAL_CALL_DEPTH];
+    private int callDepth = 0;
+
+    public VirtualMachine(IoManager ioManager, Frame globalFrame) {
+        this(ioManager, globalFrame, true);
+    }
+
+    public VirtualMachine(IoManager ioManager, Frame globalFrame, boolean foldsConstants) {
+        this(ioManager, globalFrame, foldsConstants, null, 0);
+    }
+
+    // Limits are charged the same steps as in the tree walking interpreter
+    public VirtualMachine(IoManager ioManager, Frame globalFrame, boolean foldsConstants, ExecutionLimits executionLimits,
+                          int initialCallDepth) {
+        this.ioManager = ioManager;
+        this.callSiteIoManager = new CallSiteIoManager(this, ioManager);
+        this.foldsConstants = foldsConstants;
+        this.globalFrame = globalFrame;
+        this.executionLimits = executionLimits;
+        this.initialCallDepth = initialCallDepth;
+        this.maxCallDepth = executionLimits == null ? ExecutionLimits.NO_CALL_DEPTH_LIMIT : executionLimits.getMaxCallDepth() - initialCallDepth;
+        this.stepsLeftInBatch = executionLimits == null ? Long.MAX_VALUE : 0;
+        Frame root = globalFrame;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        this.rootFrame = root;
+    }
+
+    // For calls made on behalf of another engine or thread, which carry on with its limits and call depth
+    public static VirtualMachine inCallContext(IoManager ioManager, Frame globalFrame) {
+        if (ioManager instanceof CallContextIoManager) {
+            CallContextIoManager callContext = (CallContextIoManager) ioManager;
+            return new VirtualMachine(ioManager, globalFrame, true, callContext.getExecutionLimits(), callContext.getCallDepth());
+        }
+        return new VirtualMachine(ioManager, globalFrame);
+    }
+
+    public ExecutionLimits getExecutionLimits() {
+        return executionLimits;
+    }
+
+    public int getCallDepth() {
+        return initialCallDepth + callDepth;
+    }
+
+    @Override
+    public List<NativeData> interpret(String source) {
+        List<NativeData> values = new ArrayList<>();
+        interpretEach(source, values::add);
+        return values;
+    }
+
+    @Override
+    public void execute(CharSequence source) {
+        interpretEach(source, value -> {
+        });
+    }
+
+    @Override
+    public void executeResolved(Iterator<Expression> expressions) {
+        while (expressions.hasNext()) {
+            run(Compiler.compile(expressions.next()), globalFrame);
+        }
+    }
+
+    // Each expression is compiled and run as soon as it has been parsed
+    private void interpretEach(CharSequence source, Consumer<NativeData> valueConsumer) {
+        Parser parser = new Parser(new Lexer(source, ioManager), ioManager);
+        while (parser.hasMoreExpressions()) {
+            Expression expression = parser.parseNextTopLevelExpression();
+            if (foldsConstants) {
+                expression = getConstantFolder().fold(expression);
+            }
+            getResolver().resolve(expression);
+            valueConsumer.accept(run(Compiler.compile(expression), globalFrame));
+        }
+    }
+
+    public NativeData call(CompiledFunction function, List<NativeData> arguments) {
+        callDepth = 0;
+        consumeSteps(1, makeErrorContext());
+        return run(function.getPrototype().getChunk(), makeCallFrame(function, arguments));
+    }
+
+    // Runs a function called back by the builtin on top of the call stack, above that builtin's call frame
+    NativeData callBack(CompiledFunction function, List<NativeData> arguments) {
+        consumeSteps(1, makeErrorContext());
+        return run(function.getPrototype().getChunk(), makeCallFrame(function, arguments),
+                callFrames[callDepth - 1].getStackPointer(), callDepth);
+    }
+
+    private NativeData run(Chunk entryChunk, Frame entryFrame) {
+        callDepth = 0;
+        return run(entryChunk, entryFrame, 0, 0);
+    }
+
+    // Returns once the call at the entry call depth returns
+    private NativeData run(Chunk entryChunk, Frame entryFrame, int stackBase, int entryCallDepth) {
+        Chunk chunk = entryChunk;
+        int[] code = chunk.getCode();
+        int ip = 0;
+        Frame frame = entryFrame;
+        int sp = stackBase;
+        NativeData[] stack = ensureStackCapacity(sp + code.length);
+        while (true) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT:
+                    stack[sp++] = chunk.getConstant(code[ip++]);
+                    break;
+                case OpCode.NIL:
+                    stack[sp++] = NativeNil.INSTANCE;
+                    break;
+                case OpCode.TRUE:
+                    stack[sp++] = NativeBool.TRUE;
+                    break;
+                case OpCode.FALSE:
+                    stack[sp++] = NativeBool.FALSE;
+                    break;
+                case OpCode.LOAD: {
+                    NativeData value = frame.getAncestor(code[ip]).lookUpValueAt(code[ip + 1]);
+                    if (value == null) {
+                        throw reportRuntimeErrorAt(ErrorType.UNDEFINED_SYMBOL, chunk, code[ip + 2]);
+                    }
+                    stack[sp++] = value;
+                    ip += 3;
+                    break;
+                }
+                case OpCode.LOAD_LOCAL: {
+                    NativeData value = frame.lookUpValueAt(code[ip]);
+                    if (value == null) {
+                        throw reportRuntimeErrorAt(ErrorType.UNDEFINED_SYMBOL, chunk, code[ip + 1]);
+                    }
+                    stack[sp++] = value;
+                    ip += 2;
+                    break;
+                }
+                case OpCode.UNDEFINED:
+                    throw reportRuntimeErrorAt(ErrorType.UNDEFINED_SYMBOL, chunk, code[ip]);
+                case OpCode.STORE:
+                    frame.addBinding(code[ip++], stack[sp - 1]);
+                    break;
+                case OpCode.STORE_FUNCTION: {
+                    int slot = code[ip++];
+                    frame.addBinding(slot, stack[sp - 1]);
+                    ((CompiledFunction) stack[sp - 1]).bindToOwnSlot(slot);
+                    break;
+                }
+                case OpCode.POP:
+                    sp--;
+                    break;
+                case OpCode.LIST: {
+                    int itemCount = code[ip++];
+                    NativeList list = NativeList.empty();
+                    for (int i = 1; i <= itemCount; i++) {
+                        list = list.prepend(stack[sp - i]);
+                    }
+                    sp -= itemCount;
+                    stack[sp++] = list;
+                    break;
+                }
+                case OpCode.PUSH_FRAME:
+                    frame = new Frame(frame, code[ip++]);
+                    break;
+                case OpCode.POP_FRAME:
+                    frame = frame.getParent();
+                    break;
+                case OpCode.FUNCTION:
+                    stack[sp++] = makeFunction(chunk.getPrototype(code[ip++]), frame);
+                    break;
+                case OpCode.NEGATE: {
+                    NativeData inside = stack[sp - 1];
+                    if (!(inside instanceof NativeNumber)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip]);
+                    }
+                    stack[sp - 1] = NativeNumber.of(-((NativeNumber) inside).getValue());
+                    ip++;
+                    break;
+                }
+                case OpCode.NOT: {
+                    NativeData inside = stack[sp - 1];
+                    if (!(inside instanceof NativeBool)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip]);
+                    }
+                    stack[sp - 1] = NativeBool.of(!((NativeBool) inside).getValue());
+                    ip++;
+                    break;
+                }
+                case OpCode.ADD: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() + ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() - ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() * ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip]);
+                    NativeNumber quotient = NativeNumber.of(((NativeNumber) left).getValue() / ((NativeNumber) right).getValue());
+                    if (quotient.isInvalid()) {
+                        throw reportStaticErrorAt(ErrorType.DIVISION_BY_ZERO, chunk, code[ip]);
+                    }
+                    stack[sp - 1] = quotient;
+                    ip++;
+                    break;
+                }
+                case OpCode.EXPONENT: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeNumber.of(Math.pow(((NativeNumber) left).getValue(), ((NativeNumber) right).getValue()));
+                    break;
+                }
+                case OpCode.LESS_THAN: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() < ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.GREATER_THAN: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() > ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() <= ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    NativeData right = stack[--sp], left = stack[sp - 1];
+                    assertNumbers(left, right, chunk, code[ip++]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() >= ((NativeNumber) right).getValue());
+                    break;
+                }
+                case OpCode.EQUALS:
+                    stack[sp - 2] = NativeBool.of(stack[sp - 2].equals(stack[sp - 1]));
+                    sp--;
+                    break;
+                case OpCode.NOT_EQUAL:
+                    stack[sp - 2] = NativeBool.of(!stack[sp - 2].equals(stack[sp - 1]));
+                    sp--;
+                    break;
+                case OpCode.CONCATENATE: {
+                    NativeData left = stack[sp - 2], right = stack[sp - 1];
+                    if (!(left instanceof NativeString && right instanceof NativeString)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip]);
+                    }
+                    stack[sp - 2] = ((NativeString) left).concatenate((NativeString) right);
+                    sp--;
+                    ip++;
+                    break;
+                }
+                case OpCode.CONS: {
+                    NativeData right = stack[sp - 1];
+                    if (!(right instanceof NativeList)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip]);
+                    }
+                    stack[sp - 2] = ((NativeList) right).prepend(stack[sp - 2]);
+                    sp--;
+                    ip++;
+                    break;
+                }
+                case OpCode.ADD_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() + ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.SUBTRACT_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() - ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.MULTIPLY_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeNumber.of(((NativeNumber) left).getValue() * ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.LESS_THAN_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() < ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.GREATER_THAN_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() > ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.LESS_EQUAL_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() <= ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.GREATER_EQUAL_CONSTANT: {
+                    NativeData left = stack[sp - 1];
+                    assertNumber(left, chunk, code[ip + 1]);
+                    stack[sp - 1] = NativeBool.of(((NativeNumber) left).getValue() >= ((NativeNumber) chunk.getConstant(code[ip])).getValue());
+                    ip += 2;
+                    break;
+                }
+                case OpCode.EQUALS_CONSTANT:
+                    stack[sp - 1] = NativeBool.of(stack[sp - 1].equals(chunk.getConstant(code[ip++])));
+                    break;
+                case OpCode.NOT_EQUAL_CONSTANT:
+                    stack[sp - 1] = NativeBool.of(!stack[sp - 1].equals(chunk.getConstant(code[ip++])));
+                    break;
+                case OpCode.JUMP:
+                    ip = code[ip];
+                    break;
+                case OpCode.JUMP_IF_FALSE: {
+                    NativeData condition = stack[--sp];
+                    if (!(condition instanceof NativeBool)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip + 1]);
+                    }
+                    ip = ((NativeBool) condition).getValue() ? ip + 2 : code[ip];
+                    break;
+                }
+                case OpCode.AND:
+                case OpCode.OR: {
+                    NativeData left = stack[sp - 1];
+                    if (!(left instanceof NativeBool)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip + 1]);
+                    }
+                    boolean shortCircuitValue = code[ip - 1] == OpCode.OR;
+                    if (((NativeBool) left).getValue() == shortCircuitValue) {
+                        ip = code[ip];
+                    } else {
+                        sp--;
+                        ip += 2;
+                    }
+                    break;
+                }
+                case OpCode.CHECK_BOOL:
+                    if (!(stack[sp - 1] instanceof NativeBool)) {
+                        throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, code[ip]);
+                    }
+                    ip++;
+                    break;
+                case OpCode.CHECK_CALL: {
+                    NativeData callee = stack[sp - 1];
+                    if (!callSiteCache.hasChecked(code[ip + 2], callee, code[ip])) {
+                        if (!(callee instanceof NativeFunction)) {
+                            throw reportStaticErrorAt(ErrorType.UNCALLABLE_VALUE, chunk, code[ip + 1]);
+                        }
+                        if (((NativeFunction) callee).getArity() != code[ip]) {
+                            throw makeErrorContext().reportRuntimeError(ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS,
+                                    callee.makeValueRepresentation(), chunk.getSiteLineNumber(code[ip + 1]));
+                        }
+                        callSiteCache.recordChecked(code[ip + 2], (NativeFunction) callee, code[ip]);
+                    }
+                    ip += 3;
+                    break;
+                }
+                case OpCode.CALL:
+                case OpCode.TAIL_CALL: {
+                    boolean isTailCall = code[ip - 1] == OpCode.TAIL_CALL;
+                    int argumentCount = code[ip];
+                    int calleeIndex = sp - argumentCount - 1;
+                    NativeFunction callee = (NativeFunction) stack[calleeIndex];
+                    int callLineNumber = chunk.getSiteLineNumber(code[ip + 1]);
+                    ip += 2;
+                    if (!(callee instanceof CompiledFunction)) {
+                        checkCallDepth(callee, callLineNumber);
+                        List<NativeData> arguments = Arrays.asList(Arrays.copyOfRange(stack, calleeIndex + 1, sp));
+                        sp = calleeIndex;
+                        int callerDepth = callDepth;
+                        pushCallFrame().save(chunk, ip, frame, sp, callee, callLineNumber);
+                        NativeData result;
+                        try {
+                            callSiteIoManager.consumeSteps(1);
+                            result = callee.call(arguments, callSiteIoManager);
+                        } finally {
+                            callDepth = callerDepth;
+                        }
+                        stack = this.stack; // Functions it called back may have grown the stack
+                        stack[sp++] = result;
+                        break;
+                    }
+                    FunctionPrototype prototype = ((CompiledFunction) callee).getPrototype();
+                    Frame calleeFrame;
+                    if (isTailCall && frame.getParent() == ((CompiledFunction) callee).getClosure()) {
+                        calleeFrame = frame; // A function calling itself in tail position reuses its frame in place
+                        calleeFrame.clear();
+                        for (int i = 0; i < argumentCount; i++) {
+                            calleeFrame.addBinding(i, stack[calleeIndex + 1 + i]);
+                        }
+                    } else {
+                        NativeData[] slots = new NativeData[prototype.getFrameSize()];
+                        System.arraycopy(stack, calleeIndex + 1, slots, 0, argumentCount);
+                        calleeFrame = new Frame(((CompiledFunction) callee).getClosure(), slots);
+                    }
+                    sp = calleeIndex;
+                    if (!isTailCall) { // A tail call takes over the current call frame, keeping its call site
+                        checkCallDepth(callee, callLineNumber);
+                        pushCallFrame().save(chunk, ip, frame, sp, callee, callLineNumber);
+                    }
+                    if (--stepsLeftInBatch < 0) {
+                        stepsLeftInBatch = executionLimits.claimSteps(-stepsLeftInBatch, makeErrorContext());
+                    }
+                    chunk = prototype.getChunk();
+                    code = chunk.getCode();
+                    ip = 0;
+                    frame = calleeFrame;
+                    stack = ensureStackCapacity(sp + code.length);
+                    break;
+                }
+                case OpCode.RETURN: {
+                    NativeData result = stack[--sp];
+                    if (callDepth == entryCallDepth) {
+                        return result;
+                    }
+                    CallFrame caller = callFrames[--callDepth];
+                    chunk = caller.getChunk();
+                    code = chunk.getCode();
+                    ip = caller.getReturnAddress();
+                    frame = caller.getFrame();
+                    sp = caller.getStackPointer();
+                    stack[sp++] = result;
+                    break;
+                }
+            }
+        }
+    }
+
+    IoManager makeErrorContext() {
+        IoManager context = ioManager;
+        for (int i = 0; i < callDepth; i++) {
+            context = new FunctionIoManagerWrapper(context, callFrames[i].getCallee().makeValueRepresentation(), callFrames[i].getCallLineNumber());
+        }
+        return context;
+    }
+
+    // Reports limits that have been reached in the given error context
+    void consumeSteps(long steps, IoManager errorContext) {
+        stepsLeftInBatch -= steps;
+        if (stepsLeftInBatch < 0) {
+            stepsLeftInBatch = executionLimits.claimSteps(-stepsLeftInBatch, errorContext);
+        }
+    }
+
+    private void checkCallDepth(NativeFunction callee, int callLineNumber) {
+        if (callDepth >= maxCallDepth) {
+            throw makeErrorContext().reportRuntimeError(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, callee.makeValueRepresentation(), callLineNumber);
+        }
+    }
+
+    private ConstantFolder getConstantFolder() {
+        if (constantFolder == null) {
+            constantFolder = new ConstantFolder();
+        }
+        return constantFolder;
+    }
+
+    private Resolver getResolver() {
+        if (resolver == null) {
+            resolver = new Resolver();
+        }
+        return resolver;
+    }
+
+    private NativeData[] ensureStackCapacity(int capacity) {
+        if (capacity > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(capacity, 2 * stack.length));
+        }
+        return stack;
+    }
+
+    private CallFrame pushCallFrame() {
+        if (callDepth == callFrames.length) {
+            callFrames = Arrays.copyOf(callFrames, 2 * callFrames.length);
+        }
+        if (callFrames[callDepth] == null) {
+            callFrames[callDepth] = new CallFrame();
+        }
+        return callFrames[callDepth++];
+    }
+
+    private Frame makeCallFrame(CompiledFunction function, List<NativeData> arguments) {
+        Frame frame = new Frame(function.getClosure(), function.getPrototype().getFrameSize());
+        for (int i = 0; i < arguments.size(); i++) {
+            frame.addBinding(i, arguments.get(i));
+        }
+        return frame;
+    }
+
+    private CompiledFunction makeFunction(FunctionPrototype prototype, Frame frame) {
+        int[] captureDepths = prototype.getCaptureDepths();
+        int[] captureSlots = prototype.getCaptureSlots();
+        NativeData[] captures = new NativeData[captureDepths.length];
+        for (int i = 0; i < captures.length; i++) {
+            captures[i] = frame.getAncestor(captureDepths[i]).lookUpValueAt(captureSlots[i]);
+        }
+        return new CompiledFunction(prototype, new Frame(rootFrame, captures));
+    }
+
+    // Binary operands are type checked only once both have been evaluated, like in the tree walking interpreter
+    private void assertNumbers(NativeData left, NativeData right, Chunk chunk, int site) {
+        if (!(left instanceof NativeNumber && right instanceof NativeNumber)) {
+            throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, site);
+        }
+    }
+
+    private void assertNumber(NativeData left, Chunk chunk, int site) {
+        if (!(left instanceof NativeNumber)) {
+            throw reportStaticErrorAt(ErrorType.INCOMPATIBLE_TYPES, chunk, site);
+        }
+    }
+
+    private UnwindingException reportStaticErrorAt(ErrorType errorType, Chunk chunk, int site) {
+        return makeErrorContext().reportStaticError(errorType, chunk.getSiteName(site), chunk.getSiteLineNumber(site));
+    }
+
+    private UnwindingException reportRuntimeErrorAt(ErrorType errorType, Chunk chunk, int site) {
+        return makeErrorContext().reportRuntimeError(errorType, chunk.getSiteName(site), chunk.getSiteLineNumber(site));
+    }
+}
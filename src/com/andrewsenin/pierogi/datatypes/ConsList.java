@@ -0,0 +1,71 @@
+package com.andrewsenin.pierogi.datatypes;
+
+import java.util.NoSuchElementException;
+
+// Prepending and taking the rest share structure instead of copying
+public class ConsList extends NativeList {
+
+    static final ConsList EMPTY = new ConsList(null, null, 0);
+
+    private final NativeData first;
+    private final NativeList rest;
+    private final int size;
+
+    public ConsList(NativeData first, NativeList rest) {
+        this(first, rest, rest.getSize() + 1);
+    }
+
+    private ConsList(NativeData first, NativeList rest, int size) {
+        this.first = first;
+        this.rest = rest;
+        this.size = size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public NativeData getFirst() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return first;
+    }
+
+    @Override
+    public NativeList getRest() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return rest;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(NativeData other) {
+        if (!(other instanceof ConsList)) {
+            return super.equals(other);
+        }
+        ConsList otherList = (ConsList) other;
+        if (size != otherList.size) {
+            return false;
+        }
+        // Lists that share a tail are equal from there on
+        NativeList list = this;
+        NativeList otherRest = otherList;
+        while (list instanceof ConsList && otherRest instanceof ConsList && list != otherRest && !list.isEmpty()) {
+            if (!((ConsList) list).first.equals(((ConsList) otherRest).first)) {
+                return false;
+            }
+            list = ((ConsList) list).rest;
+            otherRest = ((ConsList) otherRest).rest;
+        }
+        return list == otherRest || list.isEmpty() || list.equals(otherRest);
+    }
+}
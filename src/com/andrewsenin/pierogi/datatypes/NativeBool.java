@@ -2,22 +2,26 @@ package com.andrewsenin.pierogi.datatypes;
 
 public class NativeBool implements NativeData {
 
+    public static final NativeBool TRUE = new NativeBool(true);
+    public static final NativeBool FALSE = new NativeBool(false);
+
     private final boolean value;
 
-    public NativeBool(boolean value) {
+    private NativeBool(boolean value) {
         this.value = value;
     }
 
+    public static NativeBool of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     public boolean getValue() {
         return value;
     }
 
     @Override
     public boolean equals(NativeData other) {
-        if (!(other instanceof NativeBool)) {
-            return false;
-        }
-        return value == ((NativeBool) other).value;
+        return this == other;
     }
 
     @Override
@@ -1,9 +1,20 @@
 package com.andrewsenin.pierogi.datatypes;
 
+import java.io.IOException;
+
 public interface NativeData {
     boolean equals(NativeData other);
 
     String makeValueRepresentation();
 
     String makePrintRepresentation();
+
+    // Large values override these to write themselves out without building the representation first
+    default void appendValueRepresentation(Appendable output) throws IOException {
+        output.append(makeValueRepresentation());
+    }
+
+    default void appendPrintRepresentation(Appendable output) throws IOException {
+        output.append(makePrintRepresentation());
+    }
 }
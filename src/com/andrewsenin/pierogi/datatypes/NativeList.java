@@ -1,17 +1,54 @@
 package com.andrewsenin.pierogi.datatypes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
-public class NativeList implements NativeData {
+// Lists are immutable, so a list may be a chain of cons cells or a range of numbers
+// without the program being able to tell them apart
+public abstract class NativeList implements NativeData, Iterable<NativeData> {
 
-    private final Deque<NativeData> items;
+    public static NativeList empty() {
+        return ConsList.EMPTY;
+    }
 
-    public NativeList(Deque<NativeData> items) {
-        this.items = items;
+    public static NativeList of(List<NativeData> items) {
+        NativeList list = empty();
+        for (ListIterator<NativeData> iterator = items.listIterator(items.size()); iterator.hasPrevious(); ) {
+            list = list.prepend(iterator.previous());
+        }
+        return list;
     }
 
-    public Deque<NativeData> getItems() {
-        return items;
+    public NativeList prepend(NativeData item) {
+        return new ConsList(item, this);
+    }
+
+    public abstract boolean isEmpty();
+
+    public abstract NativeData getFirst();
+
+    public abstract NativeList getRest();
+
+    public abstract int getSize();
+
+    @Override
+    public Iterator<NativeData> iterator() {
+        return new Iterator<>() {
+            private NativeList current = NativeList.this;
+
+            @Override
+            public boolean hasNext() {
+                return !current.isEmpty();
+            }
+
+            @Override
+            public NativeData next() {
+                NativeData item = current.getFirst();
+                current = current.getRest();
+                return item;
+            }
+        };
     }
 
     @Override
@@ -19,28 +56,50 @@ public class NativeList implements NativeData {
         if (!(other instanceof NativeList)) {
             return false;
         }
-        NativeList otherList = (NativeList) other;
-        if (items.size() != otherList.items.size()) {
-            return false;
+        if (this == other) {
+            return true;
         }
-        Iterator<NativeData> iterator = items.iterator(), otherIterator = otherList.items.iterator();
-        while (iterator.hasNext()) {
-            if (!iterator.next().equals(otherIterator.next())) {
+        Iterator<NativeData> items = iterator();
+        Iterator<NativeData> otherItems = ((NativeList) other).iterator();
+        while (items.hasNext() && otherItems.hasNext()) {
+            if (!items.next().equals(otherItems.next())) {
                 return false;
             }
         }
-        return true;
+        return !items.hasNext() && !otherItems.hasNext();
     }
 
     @Override
     public String makeValueRepresentation() {
-        List<String> itemStrings = new ArrayList<>();
-        items.forEach(item -> itemStrings.add(item.makeValueRepresentation()));
-        return "[" + String.join(", ", itemStrings) + "]";
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendValueRepresentation(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Never thrown by a StringBuilder
+        }
+        return builder.toString();
     }
 
     @Override
     public String makePrintRepresentation() {
         return makeValueRepresentation();
     }
+
+    @Override
+    public void appendValueRepresentation(Appendable output) throws IOException {
+        output.append('[');
+        Iterator<NativeData> items = iterator();
+        while (items.hasNext()) {
+            items.next().appendValueRepresentation(output);
+            if (items.hasNext()) {
+                output.append(", ");
+            }
+        }
+        output.append(']');
+    }
+
+    @Override
+    public void appendPrintRepresentation(Appendable output) throws IOException {
+        appendValueRepresentation(output);
+    }
 }
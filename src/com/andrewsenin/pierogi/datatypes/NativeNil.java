@@ -2,9 +2,14 @@ package com.andrewsenin.pierogi.datatypes;
 
 public class NativeNil implements NativeData {
 
+    public static final NativeNil INSTANCE = new NativeNil();
+
+    private NativeNil() {
+    }
+
     @Override
     public boolean equals(NativeData other) {
-        return other instanceof NativeNil;
+        return this == other;
     }
 
     @Override
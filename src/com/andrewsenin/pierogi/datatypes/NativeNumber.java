@@ -2,14 +2,40 @@ package com.andrewsenin.pierogi.datatypes;
 
 public class NativeNumber implements NativeData {
 
+    private static final int SMALLEST_CACHED_INTEGER = -128;
+    private static final int LARGEST_CACHED_INTEGER = 1023;
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    private static final NativeNumber[] CACHED_INTEGERS = new NativeNumber[LARGEST_CACHED_INTEGER - SMALLEST_CACHED_INTEGER + 1];
+
+    static {
+        for (int i = 0; i < CACHED_INTEGERS.length; i++) {
+            CACHED_INTEGERS[i] = new NativeNumber(SMALLEST_CACHED_INTEGER + i);
+        }
+    }
+
     private final double value;
 
-    public NativeNumber(double value) {
+    private NativeNumber(double value) {
         this.value = value;
     }
 
+    // Small integers are shared, except for -0 which has to keep its own representation
+    public static NativeNumber of(double value) {
+        if (value >= SMALLEST_CACHED_INTEGER && value <= LARGEST_CACHED_INTEGER) {
+            int integerValue = (int) value;
+            if (integerValue == value && (integerValue != 0 || Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS)) {
+                return CACHED_INTEGERS[integerValue - SMALLEST_CACHED_INTEGER];
+            }
+        }
+        return new NativeNumber(value);
+    }
+
     // TODO: add other detectors to defend against creating Infinity by 999999^999999999999 for instance
     public boolean isInvalid() {
+        return isInvalid(value);
+    }
+
+    public static boolean isInvalid(double value) {
         return value == Double.POSITIVE_INFINITY || value == Double.NEGATIVE_INFINITY || Double.isNaN(value);
     }
 
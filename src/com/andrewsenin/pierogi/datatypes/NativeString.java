@@ -1,32 +1,120 @@
 package com.andrewsenin.pierogi.datatypes;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Concatenating long strings makes a rope node instead of copying, and the rope is flattened the first time its
+// characters are needed, so building a string piece by piece takes linear time
 public class NativeString implements NativeData {
 
-    private final String value;
+    private static final int MAX_COPIED_LENGTH = 256; // Shorter results are cheaper to copy than to link
+
+    // A String once flattened, and a Concatenation until then. One field keeps the two consistent across threads
+    private volatile Object contents;
+    private final int length;
 
     public NativeString(String value) {
-        this.value = value;
+        this.contents = value;
+        this.length = value.length();
+    }
+
+    private NativeString(NativeString left, NativeString right) {
+        this.contents = new Concatenation(left, right);
+        this.length = left.length + right.length;
+    }
+
+    public NativeString concatenate(NativeString other) {
+        if (other.length == 0) {
+            return this;
+        }
+        if (length == 0) {
+            return other;
+        }
+        if (length + other.length <= MAX_COPIED_LENGTH) {
+            return new NativeString(getValue() + other.getValue());
+        }
+        return new NativeString(this, other);
     }
 
     public String getValue() {
+        Object contents = this.contents;
+        return contents instanceof String ? (String) contents : flatten();
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    private String flatten() {
+        StringBuilder builder = new StringBuilder(length);
+        try {
+            appendPieces(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Never thrown by a StringBuilder
+        }
+        String value = builder.toString();
+        contents = value; // Lets go of the pieces
         return value;
     }
 
+    // Walks the rope with an explicit stack, since strings built in a loop make ropes as deep as the loop is long
+    private void appendPieces(Appendable output) throws IOException {
+        Deque<NativeString> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Object contents = pending.pop().contents;
+            if (contents instanceof String) {
+                output.append((String) contents);
+            } else {
+                Concatenation concatenation = (Concatenation) contents;
+                pending.push(concatenation.right);
+                pending.push(concatenation.left);
+            }
+        }
+    }
+
     @Override
     public boolean equals(NativeData other) {
         if (!(other instanceof NativeString)) {
             return false;
         }
-        return value.equals(((NativeString) other).value);
+        NativeString otherString = (NativeString) other;
+        return length == otherString.length && getValue().equals(otherString.getValue());
     }
 
     @Override
     public String makeValueRepresentation() {
-        return "\"" + value + "\"";
+        return "\"" + getValue() + "\"";
     }
 
     @Override
     public String makePrintRepresentation() {
-        return value;
+        return getValue();
+    }
+
+    // Ropes are written out piece by piece rather than flattened
+    @Override
+    public void appendValueRepresentation(Appendable output) throws IOException {
+        output.append('"');
+        appendPieces(output);
+        output.append('"');
+    }
+
+    @Override
+    public void appendPrintRepresentation(Appendable output) throws IOException {
+        appendPieces(output);
+    }
+
+    private static class Concatenation {
+
+        private final NativeString left;
+        private final NativeString right;
+
+        private Concatenation(NativeString left, NativeString right) {
+            this.left = left;
+            this.right = right;
+        }
     }
 }
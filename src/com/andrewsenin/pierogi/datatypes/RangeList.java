@@ -0,0 +1,90 @@
+package com.andrewsenin.pierogi.datatypes;
+
+import com.andrewsenin.pierogi.interpreter.ExecutionLimits;
+import com.andrewsenin.pierogi.io.IoManager;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// The numbers from start up to but excluding end, made only as they are needed. Under execution limits a step is paid
+// for every number made, so only the part of a range a program uses counts against them
+public class RangeList extends NativeList {
+
+    private static final int ITEMS_PER_PAYMENT = 1024;
+
+    private final int start;
+    private final int end;
+    private final ExecutionLimits executionLimits;
+    private final IoManager ioManager;
+
+    public RangeList(int start, int end) {
+        this(start, end, null, null);
+    }
+
+    public RangeList(int start, int end, ExecutionLimits executionLimits, IoManager ioManager) {
+        this.start = start;
+        this.end = Math.max(start, end);
+        this.executionLimits = executionLimits;
+        this.ioManager = ioManager;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    @Override
+    public NativeData getFirst() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        payForItems(1);
+        return NativeNumber.of(start);
+    }
+
+    @Override
+    public NativeList getRest() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return new RangeList(start + 1, end, executionLimits, ioManager);
+    }
+
+    @Override
+    public int getSize() {
+        return end - start;
+    }
+
+    @Override
+    public Iterator<NativeData> iterator() {
+        return new Iterator<>() {
+            private int next = start;
+            private int paidUntil = start;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public NativeData next() {
+                if (next == end) {
+                    throw new NoSuchElementException();
+                }
+                // Items are paid for ahead in batches, so a walk left early pays for at most one batch too many
+                if (next == paidUntil) {
+                    int items = Math.min(ITEMS_PER_PAYMENT, end - next);
+                    payForItems(items);
+                    paidUntil += items;
+                }
+                return NativeNumber.of(next++);
+            }
+        };
+    }
+
+    private void payForItems(int items) {
+        if (executionLimits != null) {
+            executionLimits.payForSteps(items, ioManager);
+        }
+    }
+}
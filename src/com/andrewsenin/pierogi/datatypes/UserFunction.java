@@ -1,6 +1,7 @@
 package com.andrewsenin.pierogi.datatypes;
 
-import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.ast.FunctionExpression;
+import com.andrewsenin.pierogi.interpreter.CallStackIoManager;
 import com.andrewsenin.pierogi.interpreter.Environment;
 import com.andrewsenin.pierogi.interpreter.Interpreter;
 import com.andrewsenin.pierogi.io.IoManager;
@@ -9,31 +10,38 @@ import java.util.List;
 
 public class UserFunction extends NativeFunction {
 
-    private final List<String> parameters;
-    private final List<Expression> definition;
+    private final FunctionExpression functionExpression;
     private final Environment environment;
 
-    public UserFunction(List<String> parameters, List<Expression> definition, Environment environment) {
-        this.parameters = parameters;
-        this.definition = definition;
+    public UserFunction(FunctionExpression functionExpression, Environment environment) {
+        this.functionExpression = functionExpression;
         this.environment = environment;
     }
 
+    public FunctionExpression getFunctionExpression() {
+        return functionExpression;
+    }
+
     @Override
     public NativeData call(List<NativeData> arguments, IoManager ioManager) {
-        environment.pushNewFrame();
-        for (int i = 0; i < parameters.size(); i++) {
-            environment.addBinding(parameters.get(i), arguments.get(i));
+        if (ioManager instanceof CallStackIoManager) { // Called back by a builtin, so keep to the caller's interpreter
+            return ((CallStackIoManager) ioManager).getInterpreter().runUserFunction(this, arguments);
         }
-        Interpreter interpreter = new Interpreter(ioManager, environment);
-        List<NativeData> results = interpreter.interpret(definition);
-        environment.popCurrentFrame();
-        return results.get(results.size() - 1);
+        return Interpreter.inCallContext(ioManager, environment).runUserFunction(this, arguments);
+    }
+
+    // Called once the function has been defined into the slot
+    public void bindToOwnSlot(int slot) {
+        environment.getCurrentFrame().bindCapturesOfOwnSlot(functionExpression.getCaptureDepths(), functionExpression.getCaptureSlots(), slot, this);
+    }
+
+    public Environment makeCallEnvironment() {
+        return environment.makeChild(functionExpression.getFrameSize());
     }
 
     @Override
     public int getArity() {
-        return parameters.size();
+        return functionExpression.getParameters().size();
     }
 
     @Override
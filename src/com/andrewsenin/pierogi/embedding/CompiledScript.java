@@ -0,0 +1,100 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.ExecutionLimits;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.interpreter.Interpreter;
+
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+// A parsed and resolved script. Every execution gets a global frame of its own on top of the shared builtins, which
+// are never written to, so a script can be executed from several threads at once
+public class CompiledScript {
+
+    private final List<Expression> expressions;
+    private final List<String> globalSymbols;
+
+    public CompiledScript(List<Expression> expressions, List<String> globalSymbols) {
+        this.expressions = List.copyOf(expressions);
+        this.globalSymbols = List.copyOf(globalSymbols);
+    }
+
+    // The symbols the script defines or uses without defining, which bindings can give values to
+    public List<String> getGlobalSymbols() {
+        return globalSymbols;
+    }
+
+    // Prints to standard output, and input always reads as empty
+    public Object execute(Map<String, ?> bindings) {
+        return execute(bindings, Reader.nullReader(), new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+
+    // Returns the value of the last expression converted to Java, and throws a ScriptError if the script fails
+    public Object execute(Map<String, ?> bindings, Reader input, Writer output) {
+        return execute(bindings, input, output, null);
+    }
+
+    // Scripts that reach a limit fail with a ScriptError like any other
+    public Object execute(Map<String, ?> bindings, Reader input, Writer output, ExecutionLimits executionLimits) {
+        return run(new Frame(BuiltinsFrame.INSTANCE, makeGlobalValues(bindings)), input, output, executionLimits);
+    }
+
+    // Like execute, but the script's global definitions are written back to the globals afterwards, even if it fails
+    // part of the way through, so that the map carries state from one script to the next
+    public Object executeIn(Map<String, Object> globals, Reader input, Writer output) {
+        NativeData[] initialValues = makeGlobalValues(globals);
+        Frame globalFrame = new Frame(BuiltinsFrame.INSTANCE, initialValues.clone());
+        Object result;
+        try {
+            result = run(globalFrame, input, output, null);
+        } catch (RuntimeException | Error e) {
+            // The script's own failure is the one to throw, even if writing back the globals fails as well
+            try {
+                writeBackGlobals(globals, initialValues, globalFrame);
+            } catch (RuntimeException | Error writeBackFailure) {
+                e.addSuppressed(writeBackFailure);
+            }
+            throw e;
+        }
+        writeBackGlobals(globals, initialValues, globalFrame);
+        return result;
+    }
+
+    private void writeBackGlobals(Map<String, Object> globals, NativeData[] initialValues, Frame globalFrame) {
+        for (int slot = 0; slot < initialValues.length; slot++) {
+            NativeData value = globalFrame.lookUpValueAt(slot);
+            if (value != initialValues[slot]) {
+                globals.put(globalSymbols.get(slot), JavaValues.toJava(value));
+            }
+        }
+    }
+
+    private NativeData[] makeGlobalValues(Map<String, ?> bindings) {
+        NativeData[] values = new NativeData[globalSymbols.size()];
+        for (int slot = 0; slot < values.length; slot++) {
+            String symbol = globalSymbols.get(slot);
+            if (bindings.containsKey(symbol)) {
+                values[slot] = JavaValues.toNative(bindings.get(symbol));
+            }
+        }
+        return values;
+    }
+
+    private Object run(Frame globalFrame, Reader input, Writer output, ExecutionLimits executionLimits) {
+        ScriptIoManager ioManager = new ScriptIoManager(input, output);
+        try {
+            List<NativeData> values = new Interpreter(ioManager, new Environment(globalFrame), executionLimits).interpret(expressions);
+            return values.isEmpty() ? null : JavaValues.toJava(values.get(values.size() - 1));
+        } finally {
+            ioManager.flush();
+        }
+    }
+}
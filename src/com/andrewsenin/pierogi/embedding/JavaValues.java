@@ -0,0 +1,60 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.datatypes.*;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Converts between Java objects and the values of the language
+public class JavaValues {
+
+    private JavaValues() {
+    }
+
+    // Accepts null, booleans, numbers, strings, characters, iterables and arrays of those, and values of the language
+    // as they are
+    public static NativeData toNative(Object value) {
+        if (value == null) {
+            return NativeNil.INSTANCE;
+        } else if (value instanceof NativeData) {
+            return (NativeData) value;
+        } else if (value instanceof Boolean) {
+            return NativeBool.of((Boolean) value);
+        } else if (value instanceof Number) {
+            return NativeNumber.of(((Number) value).doubleValue());
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            return new NativeString(value.toString());
+        } else if (value instanceof Iterable) {
+            List<NativeData> items = new ArrayList<>();
+            ((Iterable<?>) value).forEach(item -> items.add(toNative(item)));
+            return NativeList.of(items);
+        } else if (value.getClass().isArray()) {
+            List<NativeData> items = new ArrayList<>(Array.getLength(value));
+            for (int i = 0; i < Array.getLength(value); i++) {
+                items.add(toNative(Array.get(value, i)));
+            }
+            return NativeList.of(items);
+        }
+        throw new IllegalArgumentException("No value of the language for " + value.getClass().getName());
+    }
+
+    // Numbers become doubles, lists become unmodifiable lists and functions are returned as they are
+    public static Object toJava(NativeData value) {
+        if (value instanceof NativeNil) {
+            return null;
+        } else if (value instanceof NativeBool) {
+            return ((NativeBool) value).getValue();
+        } else if (value instanceof NativeNumber) {
+            return ((NativeNumber) value).getValue();
+        } else if (value instanceof NativeString) {
+            return ((NativeString) value).getValue();
+        } else if (value instanceof NativeList) {
+            List<Object> items = new ArrayList<>(((NativeList) value).getSize());
+            ((NativeList) value).forEach(item -> items.add(toJava(item)));
+            return Collections.unmodifiableList(items);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.optimizer.ConstantFolder;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.resolver.Resolver;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Entry point for running scripts from Java. Scripts are parsed and resolved once and can then be executed any number
+// of times, from any number of threads
+public class PierogiEngine {
+
+    // Throws a ScriptError if the source doesn't parse
+    public CompiledScript compile(String source) {
+        IoManager ioManager = new ScriptIoManager(Reader.nullReader(), Writer.nullWriter());
+        ConstantFolder constantFolder = new ConstantFolder();
+        List<Expression> expressions = new ArrayList<>();
+        new Parser(new Lexer(source, ioManager), ioManager).parseTokens().forEach(expression -> expressions.add(constantFolder.fold(expression)));
+        Resolver resolver = new Resolver(true);
+        resolver.resolve(expressions);
+        return new CompiledScript(expressions, resolver.getGlobalSymbols());
+    }
+}
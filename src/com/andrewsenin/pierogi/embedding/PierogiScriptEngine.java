@@ -0,0 +1,110 @@
+package com.andrewsenin.pierogi.embedding;
+
+import javax.script.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+// Runs scripts through javax.script. The global and engine scope bindings are visible to scripts, with the engine
+// scope taking precedence, and definitions made by a script are written back to the engine scope
+public class PierogiScriptEngine extends AbstractScriptEngine implements Compilable {
+
+    private final PierogiScriptEngineFactory factory;
+    private final PierogiEngine engine;
+
+    public PierogiScriptEngine(PierogiScriptEngineFactory factory, PierogiEngine engine) {
+        this.factory = factory;
+        this.engine = engine;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(readScript(reader), context);
+    }
+
+    @Override
+    public javax.script.CompiledScript compile(String script) throws ScriptException {
+        CompiledScript compiledScript;
+        try {
+            compiledScript = engine.compile(script);
+        } catch (ScriptError e) {
+            throw makeScriptException(e);
+        }
+        return new javax.script.CompiledScript() {
+            @Override
+            public Object eval(ScriptContext context) throws ScriptException {
+                return evaluate(compiledScript, context);
+            }
+
+            @Override
+            public ScriptEngine getEngine() {
+                return PierogiScriptEngine.this;
+            }
+        };
+    }
+
+    @Override
+    public javax.script.CompiledScript compile(Reader script) throws ScriptException {
+        return compile(readScript(script));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private static Object evaluate(CompiledScript compiledScript, ScriptContext context) throws ScriptException {
+        Map<String, Object> globals = new HashMap<>();
+        Bindings globalBindings = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+        Bindings engineBindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        for (String symbol : compiledScript.getGlobalSymbols()) {
+            if (engineBindings != null && engineBindings.containsKey(symbol)) {
+                globals.put(symbol, engineBindings.get(symbol));
+            } else if (globalBindings != null && globalBindings.containsKey(symbol)) {
+                globals.put(symbol, globalBindings.get(symbol));
+            }
+        }
+        Map<String, Object> initialGlobals = new HashMap<>(globals);
+        try {
+            return compiledScript.executeIn(globals, context.getReader(), context.getWriter());
+        } catch (ScriptError e) {
+            throw makeScriptException(e);
+        } catch (IllegalArgumentException e) {
+            throw new ScriptException(e);
+        } finally {
+            if (engineBindings != null) {
+                globals.forEach((symbol, value) -> {
+                    if (!initialGlobals.containsKey(symbol) || initialGlobals.get(symbol) != value) {
+                        engineBindings.put(symbol, value);
+                    }
+                });
+            }
+        }
+    }
+
+    private static ScriptException makeScriptException(ScriptError error) {
+        return new ScriptException(error.getMessage(), null, error.getLineNumber());
+    }
+
+    private static String readScript(Reader reader) throws ScriptException {
+        StringWriter script = new StringWriter();
+        try {
+            reader.transferTo(script);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return script.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.andrewsenin.pierogi.embedding;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+// Registered as a service, so that a ScriptEngineManager finds the engine by the name "pierogi" or the extension "pg"
+public class PierogiScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final String NAME = "pierogi";
+    private static final String VERSION = "1.0";
+
+    private final PierogiEngine engine = new PierogiEngine();
+
+    @Override
+    public String getEngineName() {
+        return NAME;
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("pg");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of();
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of(NAME);
+    }
+
+    @Override
+    public String getLanguageName() {
+        return NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.NAME:
+                return getNames().get(0);
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... arguments) {
+        throw new UnsupportedOperationException("The language has no methods");
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        String escaped = toDisplay.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "print(\"" + escaped + "\")";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return String.join("\n", statements);
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new PierogiScriptEngine(this, engine);
+    }
+}
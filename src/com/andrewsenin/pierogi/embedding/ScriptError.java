@@ -0,0 +1,49 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.UnwindingException;
+
+import java.util.List;
+
+// Thrown out of an embedded script instead of printing the error. Errors without a location have a line number of 0
+public class ScriptError extends UnwindingException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ErrorType errorType;
+    private final String near;
+    private final int lineNumber;
+    private final List<String> functionScopes;
+
+    public ScriptError(ErrorType errorType, String near, int lineNumber, List<String> functionScopes) {
+        this.errorType = errorType;
+        this.near = near;
+        this.lineNumber = lineNumber;
+        this.functionScopes = functionScopes;
+    }
+
+    public ErrorType getErrorType() {
+        return errorType;
+    }
+
+    public String getNear() {
+        return near;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    // Innermost function first, each as "In <function> on line <line>"
+    public List<String> getFunctionScopes() {
+        return functionScopes;
+    }
+
+    @Override
+    public String getMessage() {
+        if (near == null) {
+            return errorType.name();
+        }
+        return "Error on line " + lineNumber + ": " + errorType.name() + " near " + near;
+    }
+}
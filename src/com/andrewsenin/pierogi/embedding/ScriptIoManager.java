@@ -0,0 +1,99 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.MappedSource;
+import com.andrewsenin.pierogi.io.UnwindingException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Connects one run of an embedded script to the host's reader and writer, and turns errors into ScriptErrors
+public class ScriptIoManager implements IoManager {
+
+    private final BufferedReader input;
+    private final Writer output;
+    private final List<String> functionScopes = new ArrayList<>();
+
+    public ScriptIoManager(Reader input, Writer output) {
+        this.input = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        this.output = output;
+    }
+
+    @Override
+    public void print(String message) {
+        try {
+            output.write(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void printLine(String message) {
+        try {
+            output.write(message);
+            output.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Appendable getAppendableOutput() {
+        return output;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The end of the input reads as an empty line
+    @Override
+    public String requestInput() {
+        flush();
+        try {
+            String line = input.readLine();
+            return line == null ? "" : line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return MappedSource.map(file.toPath());
+    }
+
+    @Override
+    public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
+        return makeError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType) {
+        return makeError(errorType, null, 0);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType, String near, int lineNumber) {
+        return makeError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public void recordFunctionScope(String functionName, int lineNumber) {
+        functionScopes.add("In " + functionName + " on line " + lineNumber);
+    }
+
+    private ScriptError makeError(ErrorType errorType, String near, int lineNumber) {
+        List<String> errorFunctionScopes = List.copyOf(functionScopes);
+        functionScopes.clear();
+        return new ScriptError(errorType, near, lineNumber, errorFunctionScopes);
+    }
+}
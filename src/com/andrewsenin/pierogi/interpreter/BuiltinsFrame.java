@@ -4,113 +4,202 @@ import com.andrewsenin.pierogi.datatypes.*;
 import com.andrewsenin.pierogi.io.ErrorType;
 import com.andrewsenin.pierogi.io.IoManager;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
+// The builtins are defined once per JVM and never change afterwards, so every interpreter on every thread shares them.
+// Global definitions shadow them, since the global frame of each interpreter sits on top
 public class BuiltinsFrame extends Frame {
 
-    private final Random random = new Random(); // TODO: make thread local if adding multithreading support
+    public static final int NO_SLOT = -1;
+    private static final List<String> SYMBOLS = List.of(
+            "print", "println", "input", "epoch", "random", "exit",
+            "toString", "parseNumber",
+            "pi", "exp", "sin", "cos",
+            "first", "rest", "iota", "map", "filter", "pmap", "pfilter"
+    );
+    private static final Map<String, Integer> SLOTS = new HashMap<>();
+    private static final NativeData[] VALUES = new NativeData[SYMBOLS.size()];
+    public static final BuiltinsFrame INSTANCE;
 
-    public BuiltinsFrame() {
-        super(null);
+    static {
+        for (int slot = 0; slot < SYMBOLS.size(); slot++) {
+            SLOTS.put(SYMBOLS.get(slot), slot);
+        }
         defineBuiltins();
+        INSTANCE = new BuiltinsFrame();
+    }
+
+    private BuiltinsFrame() {
+        super(null, VALUES);
+    }
+
+    public static List<String> getSymbols() {
+        return SYMBOLS;
+    }
+
+    public static int lookUpSlotOf(String symbol) {
+        return SLOTS.getOrDefault(symbol, NO_SLOT);
+    }
+
+    public static NativeData lookUpBuiltinAt(int slot) {
+        return VALUES[slot];
     }
 
     @Override
-    public Frame makeSnapshot() {
-        return this;
+    public void addBinding(int slot, NativeData value) {
+        throw new UnsupportedOperationException("Builtins can't be redefined");
     }
 
-    private void defineBuiltins() {
-        addBinding("print", new BuiltinFunction(1, (arguments, ioManager) -> {
-            ioManager.print(arguments.get(0).makePrintRepresentation());
-            return new NativeNil();
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Builtins can't be redefined");
+    }
+
+    private static void defineBuiltins() {
+        define("print", new BuiltinFunction(1, (arguments, ioManager) -> {
+            printValue(ioManager, arguments.get(0), "");
+            return NativeNil.INSTANCE;
         }));
-        addBinding("println", new BuiltinFunction(1, (arguments, ioManager) -> {
-            ioManager.print(arguments.get(0).makePrintRepresentation() + "\n");
-            return new NativeNil();
+        define("println", new BuiltinFunction(1, (arguments, ioManager) -> {
+            printValue(ioManager, arguments.get(0), "\n");
+            return NativeNil.INSTANCE;
         }));
-        addBinding("input", new BuiltinFunction(0, (arguments, ioManager) -> new NativeString(ioManager.requestInput())));
-        addBinding("epoch", new BuiltinFunction(0, (arguments, ioManager) -> new NativeNumber(System.currentTimeMillis() / 1000.0)));
-        addBinding("random", new BuiltinFunction(0, (arguments, ioManager) -> new NativeNumber(random.nextDouble())));
-        addBinding("exit", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
-            System.exit((int) ((NativeNumber) arguments.get(0)).getValue());
-            return new NativeNil();
+        define("input", new BuiltinFunction(0, (arguments, ioManager) -> new NativeString(ioManager.requestInput())));
+        define("epoch", new BuiltinFunction(0, (arguments, ioManager) -> NativeNumber.of(System.currentTimeMillis() / 1000.0)));
+        define("random", new BuiltinFunction(0, (arguments, ioManager) -> NativeNumber.of(ThreadLocalRandom.current().nextDouble())));
+        define("exit", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+            int status = (int) ((NativeNumber) arguments.get(0)).getValue();
+            ioManager.flush();
+            System.exit(status);
+            return NativeNil.INSTANCE;
         })));
 
-        addBinding("toString", new BuiltinFunction(1, (arguments, ioManager) -> new NativeString(arguments.get(0).makePrintRepresentation())));
-        addBinding("parseNumber", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+        define("toString", new BuiltinFunction(1, (arguments, ioManager) -> new NativeString(arguments.get(0).makePrintRepresentation())));
+        define("parseNumber", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
             String s = ((NativeString) arguments.get(0)).getValue();
             try {
-                return new NativeNumber(Double.parseDouble(s));
+                return NativeNumber.of(Double.parseDouble(s));
             } catch (NumberFormatException e) {
-                return new NativeNil();
+                return NativeNil.INSTANCE;
             }
         })));
 
-        addBinding("pi", new NativeNumber(Math.PI));
-        addBinding("exp", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> new NativeNumber(Math.exp(((NativeNumber) arguments.get(0)).getValue())))));
-        addBinding("sin", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> new NativeNumber(Math.sin(((NativeNumber) arguments.get(0)).getValue())))));
-        addBinding("cos", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> new NativeNumber(Math.cos(((NativeNumber) arguments.get(0)).getValue())))));
+        define("pi", NativeNumber.of(Math.PI));
+        define("exp", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> NativeNumber.of(Math.exp(((NativeNumber) arguments.get(0)).getValue())))));
+        define("sin", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> NativeNumber.of(Math.sin(((NativeNumber) arguments.get(0)).getValue())))));
+        define("cos", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> NativeNumber.of(Math.cos(((NativeNumber) arguments.get(0)).getValue())))));
 
-        addBinding("first", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
-            Deque<NativeData> items = ((NativeList) arguments.get(0)).getItems();
-            if (items.isEmpty()) {
+        define("first", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+            NativeList list = (NativeList) arguments.get(0);
+            if (list.isEmpty()) {
                 throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
             }
-            return items.getFirst();
+            return list.getFirst();
         })));
-        addBinding("rest", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
-            Deque<NativeData> items = ((NativeList) arguments.get(0)).getItems();
-            if (items.isEmpty()) {
+        define("rest", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+            NativeList list = (NativeList) arguments.get(0);
+            if (list.isEmpty()) {
                 throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
             }
-            Deque<NativeData> newItems = new LinkedList<>();
-            Iterator<NativeData> itemIterator = items.iterator();
-            itemIterator.next();
-            while (itemIterator.hasNext()) {
-                newItems.addLast(itemIterator.next());
-            }
-            return new NativeList(newItems);
+            return list.getRest();
         })));
-        addBinding("iota", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
-            Deque<NativeData> numbers = new LinkedList<>();
+        define("iota", new BuiltinFunction(1, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
             int upperBound = (int) ((NativeNumber) arguments.get(0)).getValue();
-            for (int i = 0; i < upperBound; i++) {
-                numbers.addLast(new NativeNumber(i));
+            if (ioManager instanceof CallContextIoManager) {
+                return new RangeList(0, upperBound, ((CallContextIoManager) ioManager).getExecutionLimits(), ioManager);
             }
-            return new NativeList(numbers);
+            return new RangeList(0, upperBound);
         })));
-        addBinding("map", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+        define("map", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
             NativeFunction function = (NativeFunction) arguments.get(0);
             if (function.getArity() != 1) {
                 throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
             }
             NativeList items = (NativeList) arguments.get(1);
-            Deque<NativeData> newItems = new LinkedList<>();
-            for (NativeData item : items.getItems()) {
-                newItems.addLast(function.call(Collections.singletonList(item), ioManager));
+            consumeSteps(ioManager, items.getSize());
+            List<NativeData> newItems = new ArrayList<>(items.getSize());
+            for (NativeData item : items) {
+                newItems.add(function.call(Collections.singletonList(item), ioManager));
             }
-            return new NativeList(newItems);
+            return NativeList.of(newItems);
         })));
 
-        addBinding("filter", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+        define("filter", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
             NativeFunction predicate = (NativeFunction) arguments.get(0);
             if (predicate.getArity() != 1) {
                 throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
             }
             NativeList items = (NativeList) arguments.get(1);
-            Deque<NativeData> newItems = new LinkedList<>();
-            for (NativeData item : items.getItems()) {
+            consumeSteps(ioManager, items.getSize());
+            List<NativeData> newItems = new ArrayList<>();
+            for (NativeData item : items) {
                 if (((NativeBool) predicate.call(Collections.singletonList(item), ioManager)).getValue()) {
-                    newItems.addLast(item);
+                    newItems.add(item);
                 }
             }
-            return new NativeList(newItems);
+            return NativeList.of(newItems);
         })));
+        define("pmap", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+            NativeFunction function = (NativeFunction) arguments.get(0);
+            if (function.getArity() != 1) {
+                throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
+            }
+            List<NativeData> items = copyItems((NativeList) arguments.get(1));
+            consumeSteps(ioManager, items.size());
+            return NativeList.of(Arrays.asList(ParallelCallTask.callOnEach(function, items, ioManager)));
+        })));
+        define("pfilter", new BuiltinFunction(2, (arguments, ioManager) -> makeTypeSensitive(ioManager, () -> {
+            NativeFunction predicate = (NativeFunction) arguments.get(0);
+            if (predicate.getArity() != 1) {
+                throw ioManager.reportRuntimeError(ErrorType.BUILTIN_FUNCTION_CONTRACT_VIOLATION);
+            }
+            List<NativeData> items = copyItems((NativeList) arguments.get(1));
+            consumeSteps(ioManager, items.size());
+            NativeData[] conditions = ParallelCallTask.callOnEach(predicate, items, ioManager);
+            List<NativeData> newItems = new ArrayList<>();
+            for (int i = 0; i < conditions.length; i++) {
+                if (((NativeBool) conditions[i]).getValue()) {
+                    newItems.add(items.get(i));
+                }
+            }
+            return NativeList.of(newItems);
+        })));
+    }
+
+    private static void printValue(IoManager ioManager, NativeData value, String ending) {
+        Appendable output = ioManager.getAppendableOutput();
+        synchronized (ioManager.getOutputLock()) {
+            try {
+                value.appendPrintRepresentation(output);
+                output.append(ending);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Engines count steps through the call context they hand to the builtins they call
+    private static void consumeSteps(IoManager ioManager, long steps) {
+        if (ioManager instanceof CallContextIoManager) {
+            ((CallContextIoManager) ioManager).consumeSteps(steps);
+        }
+    }
+
+    private static List<NativeData> copyItems(NativeList list) {
+        List<NativeData> items = new ArrayList<>(list.getSize());
+        list.forEach(items::add);
+        return items;
+    }
+
+    private static void define(String symbol, NativeData value) {
+        VALUES[lookUpSlotOf(symbol)] = value;
     }
 
-    private NativeData makeTypeSensitive(IoManager ioManager, Supplier<NativeData> callback) {
+    private static NativeData makeTypeSensitive(IoManager ioManager, Supplier<NativeData> callback) {
         try {
             return callback.get();
         } catch (ClassCastException e) {
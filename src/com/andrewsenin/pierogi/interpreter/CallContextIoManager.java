@@ -0,0 +1,14 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.io.IoManager;
+
+// Handed by an execution engine to the functions it calls. Whatever runs on its behalf, on another engine or another
+// thread, charges its work to the same execution limits and counts its calls on top of the same call depth
+public interface CallContextIoManager extends IoManager {
+
+    ExecutionLimits getExecutionLimits(); // Null if there are none
+
+    int getCallDepth(); // Including the call in progress
+
+    void consumeSteps(long steps);
+}
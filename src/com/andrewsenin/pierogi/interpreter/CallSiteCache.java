@@ -0,0 +1,32 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+
+import java.util.Arrays;
+
+// Remembers, for each call site the resolver numbered, the last function that passed the call checks there and the
+// number of arguments it was checked against. A rebound name simply gives a different callee and misses. Each engine
+// keeps its own, so the cache is never shared between threads and never outlives the run that filled it
+public class CallSiteCache {
+
+    private static final int INITIAL_SIZE = 16;
+
+    private NativeFunction[] callees = new NativeFunction[0];
+    private int[] argumentCounts = new int[0];
+
+    // Call sites numbered by another resolver can share a number, which the argument count tells apart
+    public boolean hasChecked(int callSite, NativeData callee, int argumentCount) {
+        return callSite < callees.length && callees[callSite] == callee && argumentCounts[callSite] == argumentCount;
+    }
+
+    public void recordChecked(int callSite, NativeFunction callee, int argumentCount) {
+        if (callSite >= callees.length) {
+            int size = Math.max(callSite + 1, Math.max(INITIAL_SIZE, 2 * callees.length));
+            callees = Arrays.copyOf(callees, size);
+            argumentCounts = Arrays.copyOf(argumentCounts, size);
+        }
+        callees[callSite] = callee;
+        argumentCounts[callSite] = argumentCount;
+    }
+}
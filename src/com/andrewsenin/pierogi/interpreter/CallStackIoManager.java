@@ -0,0 +1,95 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+
+import java.io.File;
+import java.io.IOException;
+
+// Handed to everything an interpreter calls into; the function scopes of its call stack are only assembled if an
+// error is reported
+public class CallStackIoManager implements CallContextIoManager {
+
+    private final Interpreter interpreter;
+    private final IoManager ioManager;
+
+    public CallStackIoManager(Interpreter interpreter, IoManager ioManager) {
+        this.interpreter = interpreter;
+        this.ioManager = ioManager;
+    }
+
+    public Interpreter getInterpreter() {
+        return interpreter;
+    }
+
+    @Override
+    public ExecutionLimits getExecutionLimits() {
+        return interpreter.getExecutionLimits();
+    }
+
+    @Override
+    public int getCallDepth() {
+        return interpreter.getCallDepth();
+    }
+
+    @Override
+    public void consumeSteps(long steps) {
+        interpreter.consumeSteps(steps);
+    }
+
+    @Override
+    public void print(String message) {
+        ioManager.print(message);
+    }
+
+    @Override
+    public void printLine(String message) {
+        ioManager.printLine(message);
+    }
+
+    @Override
+    public Appendable getAppendableOutput() {
+        return ioManager.getAppendableOutput();
+    }
+
+    @Override
+    public Object getOutputLock() {
+        return ioManager.getOutputLock();
+    }
+
+    @Override
+    public void flush() {
+        ioManager.flush();
+    }
+
+    @Override
+    public String requestInput() {
+        return ioManager.requestInput();
+    }
+
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return ioManager.readSourceFile(file);
+    }
+
+    @Override
+    public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
+        return interpreter.makeErrorContext().reportStaticError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType) {
+        return interpreter.makeErrorContext().reportRuntimeError(errorType);
+    }
+
+    @Override
+    public UnwindingException reportRuntimeError(ErrorType errorType, String near, int lineNumber) {
+        return interpreter.makeErrorContext().reportRuntimeError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public void recordFunctionScope(String functionName, int lineNumber) {
+        ioManager.recordFunctionScope(functionName, lineNumber);
+    }
+}
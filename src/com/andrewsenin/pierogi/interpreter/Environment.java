@@ -4,42 +4,53 @@ import com.andrewsenin.pierogi.datatypes.NativeData;
 
 public class Environment {
 
-    private Frame currentFrame;
+    private final Frame rootFrame;
+    private final Frame currentFrame;
 
     public Environment(Frame currentFrame) {
+        this(findRootOf(currentFrame), currentFrame);
+    }
+
+    private Environment(Frame rootFrame, Frame currentFrame) {
+        this.rootFrame = rootFrame;
         this.currentFrame = currentFrame;
     }
 
-    public boolean hasDefinitionFor(String symbol) {
-        return lookUpValueOf(symbol) != null;
+    private static Frame findRootOf(Frame frame) {
+        Frame root = frame;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
+    public Frame getCurrentFrame() {
+        return currentFrame;
     }
 
-    public NativeData lookUpValueOf(String symbol) {
-        Frame searchFrame = currentFrame;
-        do {
-            NativeData lookupResult = searchFrame.lookUpValueOf(symbol);
-            if (lookupResult != null) {
-                return lookupResult;
-            }
-            searchFrame = searchFrame.getParent();
-        } while (searchFrame != null);
-        return null;
+    public NativeData lookUpValueAt(int depth, int slot) {
+        return currentFrame.getAncestor(depth).lookUpValueAt(slot);
     }
 
-    public Environment makeClosure() {
-        return new Environment(currentFrame.makeSnapshot());
+    public Environment makeClosure(int[] captureDepths, int[] captureSlots) {
+        NativeData[] captures = new NativeData[captureDepths.length];
+        for (int i = 0; i < captures.length; i++) {
+            captures[i] = lookUpValueAt(captureDepths[i], captureSlots[i]);
+        }
+        return new Environment(rootFrame, new Frame(rootFrame, captures));
     }
 
-    public void addBinding(String symbol, NativeData value) {
-        currentFrame.addBinding(symbol, value);
+    // A call's frame always sits directly on its closure, however deep the caller's own frames are. Neither a call nor
+    // a block ever changes the environment it is run in, so closures can be shared between threads
+    public Environment makeChild(int frameSize) {
+        return new Environment(rootFrame, new Frame(currentFrame, frameSize));
     }
 
-    // TODO: make a frame context manager function "doWithNewFrame"
-    public void pushNewFrame() {
-        currentFrame = new Frame(currentFrame);
+    public void addBinding(int slot, NativeData value) {
+        currentFrame.addBinding(slot, value);
     }
 
-    public void popCurrentFrame() {
-        currentFrame = currentFrame.getParent();
+    public void clearCurrentFrame() {
+        currentFrame.clear();
     }
 }
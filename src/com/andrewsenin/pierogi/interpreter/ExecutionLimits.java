@@ -0,0 +1,74 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounds what a program may do, for running code that can't be trusted. A step is charged for every function call,
+// which includes every iteration of a tail-recursive loop, and for every item a builtin produces, which for the ranges
+// of iota is when each item is made. Interpreters claim steps in batches and only check the deadline and cancellation
+// between batches, so the limits cost next to nothing while a program runs. One set of limits may be shared by
+// interpreters on several threads
+public class ExecutionLimits {
+
+    public static final long NO_STEP_LIMIT = Long.MAX_VALUE;
+    public static final Duration NO_TIME_LIMIT = null;
+    public static final int NO_CALL_DEPTH_LIMIT = Integer.MAX_VALUE;
+
+    private static final long STEPS_PER_BATCH = 1024;
+
+    private final AtomicLong remainingSteps;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final int maxCallDepth;
+    private volatile boolean isCancelled = false;
+
+    // The time limit starts counting down right away
+    public ExecutionLimits(long maxSteps, Duration timeLimit, int maxCallDepth) {
+        this.remainingSteps = new AtomicLong(maxSteps);
+        this.hasDeadline = timeLimit != NO_TIME_LIMIT;
+        this.deadline = hasDeadline ? System.nanoTime() + timeLimit.toNanos() : 0;
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    public int getMaxCallDepth() {
+        return maxCallDepth;
+    }
+
+    // Can be called from any thread. Programs stop at their next check, within a batch of steps
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    // Pays for the steps taken beyond the previous batch and returns the size of the next batch, or reports the limit
+    // that has been reached
+    public long claimSteps(long stepsTaken, IoManager ioManager) {
+        return claimSteps(stepsTaken, STEPS_PER_BATCH, ioManager);
+    }
+
+    // Pays for steps taken outside any batch, such as the items of a range as it is walked
+    public void payForSteps(long steps, IoManager ioManager) {
+        claimSteps(steps, 0, ioManager);
+    }
+
+    private long claimSteps(long stepsTaken, long batchSize, IoManager ioManager) {
+        if (isCancelled) {
+            throw ioManager.reportRuntimeError(ErrorType.EXECUTION_CANCELLED);
+        }
+        if (hasDeadline && System.nanoTime() - deadline > 0) {
+            throw ioManager.reportRuntimeError(ErrorType.TIME_LIMIT_EXCEEDED);
+        }
+        while (true) {
+            long steps = remainingSteps.get();
+            if (steps < stepsTaken) {
+                throw ioManager.reportRuntimeError(ErrorType.STEP_LIMIT_EXCEEDED);
+            }
+            long batch = Math.min(batchSize, steps - stepsTaken);
+            if (remainingSteps.compareAndSet(steps, steps - stepsTaken - batch)) {
+                return batch;
+            }
+        }
+    }
+}
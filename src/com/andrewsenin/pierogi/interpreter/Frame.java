@@ -2,43 +2,63 @@ package com.andrewsenin.pierogi.interpreter;
 
 import com.andrewsenin.pierogi.datatypes.NativeData;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class Frame {
 
     private final Frame parent;
-    private final Map<String, NativeData> bindings;
+    private NativeData[] slots;
 
     public Frame(Frame parent) {
-        this(parent, new HashMap<>());
+        this(parent, 0);
     }
 
-    public Frame(Frame parent, Map<String, NativeData> bindings) {
+    public Frame(Frame parent, int size) {
+        this(parent, new NativeData[size]);
+    }
+
+    public Frame(Frame parent, NativeData[] slots) {
         this.parent = parent;
-        this.bindings = bindings;
+        this.slots = slots;
     }
 
     public Frame getParent() {
         return parent;
     }
 
-    public NativeData lookUpValueOf(String symbol) {
-        if (bindings.containsKey(symbol)) {
-            return bindings.get(symbol);
+    public Frame getAncestor(int depth) {
+        Frame ancestor = this;
+        for (int i = 0; i < depth; i++) {
+            ancestor = ancestor.parent;
+        }
+        return ancestor;
+    }
+
+    public NativeData lookUpValueAt(int slot) {
+        if (slot >= slots.length) {
+            return null;
         }
-        return null;
+        return slots[slot];
     }
 
-    public Frame makeSnapshot() {
-        Frame snapshotParent = null;
-        if (parent != null) {
-            snapshotParent = parent.makeSnapshot();
+    // Binds the captures of a function defined into the given slot that were made before the slot had a value, so that
+    // the function can refer to itself. This is the function's closure frame
+    public void bindCapturesOfOwnSlot(int[] captureDepths, int[] captureSlots, int slot, NativeData function) {
+        for (int i = 0; i < captureDepths.length; i++) {
+            if (captureDepths[i] == 0 && captureSlots[i] == slot && slots[i] == null) {
+                slots[i] = function;
+            }
         }
-        return new Frame(snapshotParent, new HashMap<>(bindings));
     }
 
-    public void addBinding(String symbol, NativeData value) {
-        bindings.put(symbol, value);
+    public void clear() {
+        Arrays.fill(slots, null);
+    }
+
+    public void addBinding(int slot, NativeData value) {
+        if (slot >= slots.length) { // Only the global frame grows, as the REPL defines new symbols
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, 2 * slots.length));
+        }
+        slots[slot] = value;
     }
 }
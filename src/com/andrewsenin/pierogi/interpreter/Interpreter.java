@@ -1,39 +1,134 @@
 package com.andrewsenin.pierogi.interpreter;
 
+import com.andrewsenin.pierogi.ExecutionEngine;
 import com.andrewsenin.pierogi.ast.*;
 import com.andrewsenin.pierogi.datatypes.*;
 import com.andrewsenin.pierogi.io.ErrorType;
 import com.andrewsenin.pierogi.io.FunctionIoManagerWrapper;
 import com.andrewsenin.pierogi.io.IoManager;
 import com.andrewsenin.pierogi.io.UnwindingException;
+import com.andrewsenin.pierogi.jit.CompiledBody;
+import com.andrewsenin.pierogi.jit.JitCompiler;
 import com.andrewsenin.pierogi.lexer.Lexer;
-import com.andrewsenin.pierogi.lexer.Token;
 import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.optimizer.ConstantFolder;
+import com.andrewsenin.pierogi.resolver.Resolver;
 
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
-public class Interpreter implements AstVisitor<NativeData> {
+public class Interpreter implements AstVisitor<NativeData>, ExecutionEngine {
+
+    private static final int INITIAL_CALL_STACK_SIZE = 16;
+    private static final NotANumberException NOT_A_NUMBER = new NotANumberException();
 
     private final IoManager ioManager;
-    private final Environment environment;
+    private final IoManager callStackIoManager;
+    private final ExecutionLimits executionLimits;
+    private final int initialCallDepth;
+    private final int maxCallDepth; // Counted from the initial call depth
+    private final boolean foldsConstants;
+    private final CallSiteCache callSiteCache = new CallSiteCache();
+    private final NumericEvaluator numericEvaluator = new NumericEvaluator();
+    private Environment environment;
+    private ConstantFolder constantFolder = null;
+    private Resolver resolver = null;
+    // Counts down with every step and is topped up from the execution limits once it runs out
+    private long stepsLeftInBatch;
+
+    // Functions currently being called and the lines they were called on, outermost first
+    private NativeFunction[] callees = new NativeFunction[INITIAL_CALL_STACK_SIZE];
+    private int[] callLineNumbers = new int[INITIAL_CALL_STACK_SIZE];
+    private int callDepth = 0;
+    // A call in tail position is left here instead of being made, and its body returns no value. The trampoline in
+    // runUserFunction then makes the call in place of the one that just ended
+    private UserFunction pendingTailCallee = null;
+    private List<NativeData> pendingTailCallArguments = null;
 
     public Interpreter(IoManager ioManager, Environment environment) {
+        this(ioManager, environment, null);
+    }
+
+    public Interpreter(IoManager ioManager, Environment environment, ExecutionLimits executionLimits) {
+        this(ioManager, environment, executionLimits, true);
+    }
+
+    public Interpreter(IoManager ioManager, Environment environment, ExecutionLimits executionLimits, boolean foldsConstants) {
+        this(ioManager, environment, executionLimits, foldsConstants, 0);
+    }
+
+    // Without execution limits, the step count never runs out. Constant folding only applies to source the interpreter
+    // parses itself. Calls made on behalf of another interpreter start at its call depth
+    public Interpreter(IoManager ioManager, Environment environment, ExecutionLimits executionLimits, boolean foldsConstants,
+                       int initialCallDepth) {
         this.ioManager = ioManager;
+        this.foldsConstants = foldsConstants;
+        this.callStackIoManager = new CallStackIoManager(this, ioManager);
         this.environment = environment;
+        this.executionLimits = executionLimits;
+        this.initialCallDepth = initialCallDepth;
+        this.maxCallDepth = executionLimits == null ? ExecutionLimits.NO_CALL_DEPTH_LIMIT : executionLimits.getMaxCallDepth() - initialCallDepth;
+        this.stepsLeftInBatch = executionLimits == null ? Long.MAX_VALUE : 0;
+    }
+
+    // For calls made on behalf of another engine or thread, which carry on with its limits and call depth
+    public static Interpreter inCallContext(IoManager ioManager, Environment environment) {
+        if (ioManager instanceof CallContextIoManager) {
+            CallContextIoManager callContext = (CallContextIoManager) ioManager;
+            return new Interpreter(ioManager, environment, callContext.getExecutionLimits(), true, callContext.getCallDepth());
+        }
+        return new Interpreter(ioManager, environment);
+    }
+
+    public ExecutionLimits getExecutionLimits() {
+        return executionLimits;
+    }
+
+    public IoManager getCallStackIoManager() {
+        return callStackIoManager;
     }
 
+    public int getCallDepth() {
+        return initialCallDepth + callDepth;
+    }
+
+    @Override
     public List<NativeData> interpret(String source) {
-        Lexer lexer = new Lexer(source, ioManager);
-        List<Token> tokens = lexer.lexSource();
-        Parser parser = new Parser(tokens, ioManager);
-        List<Expression> expressions = parser.parseTokens();
-        return interpret(expressions);
+        List<NativeData> values = new ArrayList<>();
+        interpretEach(source, values::add);
+        return values;
+    }
+
+    @Override
+    public void execute(CharSequence source) {
+        interpretEach(source, value -> {
+        });
+    }
+
+    @Override
+    public void executeResolved(Iterator<Expression> expressions) {
+        while (expressions.hasNext()) {
+            evaluate(expressions.next());
+        }
+    }
+
+    // Each expression is evaluated as soon as it has been parsed, before the rest of the source is even lexed
+    private void interpretEach(CharSequence source, Consumer<NativeData> valueConsumer) {
+        Parser parser = new Parser(new Lexer(source, ioManager), ioManager);
+        while (parser.hasMoreExpressions()) {
+            Expression expression = parser.parseNextTopLevelExpression();
+            if (foldsConstants) {
+                expression = getConstantFolder().fold(expression);
+            }
+            getResolver().resolve(expression);
+            valueConsumer.accept(evaluate(expression));
+        }
     }
 
+    // Expressions must have been resolved against the same global scope as this interpreter's environment
     public List<NativeData> interpret(List<Expression> expressions) {
         List<NativeData> values = new ArrayList<>();
         expressions.forEach(expression -> values.add(evaluate(expression)));
@@ -44,22 +139,22 @@ public class Interpreter implements AstVisitor<NativeData> {
 
     @Override
     public NativeData visit(NilExpression nilExpression) {
-        return new NativeNil();
+        return NativeNil.INSTANCE;
     }
 
     @Override
     public NativeData visit(TrueExpression trueExpression) {
-        return new NativeBool(true);
+        return NativeBool.TRUE;
     }
 
     @Override
     public NativeData visit(FalseExpression falseExpression) {
-        return new NativeBool(false);
+        return NativeBool.FALSE;
     }
 
     @Override
     public NativeData visit(NumberExpression numberExpression) {
-        return new NativeNumber(numberExpression.getValue());
+        return NativeNumber.of(numberExpression.getValue());
     }
 
     @Override
@@ -69,18 +164,25 @@ public class Interpreter implements AstVisitor<NativeData> {
 
     @Override
     public NativeData visit(IdentifierExpression identifierExpression) {
-        String symbol = identifierExpression.getSymbol();
-        if (!environment.hasDefinitionFor(symbol)) {
-            throw ioManager.reportRuntimeError(ErrorType.UNDEFINED_SYMBOL, symbol, identifierExpression.getLineNumber());
+        int depth = identifierExpression.getDepth();
+        if (depth == Resolver.BUILTIN_DEPTH) {
+            return BuiltinsFrame.lookUpBuiltinAt(identifierExpression.getSlot());
+        }
+        NativeData value = null;
+        if (depth != Resolver.UNRESOLVED_DEPTH) {
+            value = environment.lookUpValueAt(depth, identifierExpression.getSlot());
         }
-        return environment.lookUpValueOf(symbol);
+        if (value == null) {
+            throw makeErrorContext().reportRuntimeError(ErrorType.UNDEFINED_SYMBOL, identifierExpression.getSymbol(), identifierExpression.getLineNumber());
+        }
+        return value;
     }
 
     @Override
     public NativeData visit(ListExpression listExpression) {
-        Deque<NativeData> itemValues = new LinkedList<>();
+        List<NativeData> itemValues = new ArrayList<>(listExpression.getContents().size());
         listExpression.getContents().forEach(itemExpression -> itemValues.add(evaluate(itemExpression)));
-        return new NativeList(itemValues);
+        return NativeList.of(itemValues);
     }
 
     @Override
@@ -90,11 +192,7 @@ public class Interpreter implements AstVisitor<NativeData> {
 
     @Override
     public NativeData visit(NegationExpression negationExpression) {
-        NativeData insideValue = evaluate(negationExpression.getInside());
-        if (!(insideValue instanceof NativeNumber)) {
-            throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, negationExpression);
-        }
-        return new NativeNumber(-((NativeNumber) insideValue).getValue());
+        return NativeNumber.of(numericEvaluator.visit(negationExpression));
     }
 
     @Override
@@ -103,66 +201,62 @@ public class Interpreter implements AstVisitor<NativeData> {
         if (!(insideValue instanceof NativeBool)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, notExpression);
         }
-        return new NativeBool(!((NativeBool) insideValue).getValue());
+        return NativeBool.of(!((NativeBool) insideValue).getValue());
     }
 
     @Override
     public NativeData visit(AdditionExpression additionExpression) {
-        return evaluateBinaryNumericExpression(additionExpression, (a, b) -> new NativeNumber(a.getValue() + b.getValue()));
+        return NativeNumber.of(numericEvaluator.visit(additionExpression));
     }
 
     @Override
     public NativeData visit(SubtractionExpression subtractionExpression) {
-        return evaluateBinaryNumericExpression(subtractionExpression, (a, b) -> new NativeNumber(a.getValue() - b.getValue()));
+        return NativeNumber.of(numericEvaluator.visit(subtractionExpression));
     }
 
     @Override
     public NativeData visit(MultiplicationExpression multiplicationExpression) {
-        return evaluateBinaryNumericExpression(multiplicationExpression, (a, b) -> new NativeNumber(a.getValue() * b.getValue()));
+        return NativeNumber.of(numericEvaluator.visit(multiplicationExpression));
     }
 
     @Override
     public NativeData visit(DivisionExpression divisionExpression) {
-        NativeNumber result = (NativeNumber) evaluateBinaryNumericExpression(divisionExpression, (a, b) -> new NativeNumber(a.getValue() / b.getValue()));
-        if (result.isInvalid()) {
-            throw reportErrorAtExpression(ErrorType.DIVISION_BY_ZERO, divisionExpression);
-        }
-        return result;
+        return NativeNumber.of(numericEvaluator.visit(divisionExpression));
     }
 
     @Override
     public NativeData visit(ExponentExpression exponentExpression) {
-        return evaluateBinaryNumericExpression(exponentExpression, (a, b) -> new NativeNumber(Math.pow(a.getValue(), b.getValue())));
+        return NativeNumber.of(numericEvaluator.visit(exponentExpression));
     }
 
     @Override
     public NativeData visit(LessThanExpression lessThanExpression) {
-        return evaluateBinaryNumericExpression(lessThanExpression, (a, b) -> new NativeBool(a.getValue() < b.getValue()));
+        return NativeBool.of(evaluateLeftOperand(lessThanExpression) < evaluateRightOperand(lessThanExpression));
     }
 
     @Override
     public NativeData visit(GreaterThanExpression greaterThanExpression) {
-        return evaluateBinaryNumericExpression(greaterThanExpression, (a, b) -> new NativeBool(a.getValue() > b.getValue()));
+        return NativeBool.of(evaluateLeftOperand(greaterThanExpression) > evaluateRightOperand(greaterThanExpression));
     }
 
     @Override
     public NativeData visit(LessEqualExpression lessEqualExpression) {
-        return evaluateBinaryNumericExpression(lessEqualExpression, (a, b) -> new NativeBool(a.getValue() <= b.getValue()));
+        return NativeBool.of(evaluateLeftOperand(lessEqualExpression) <= evaluateRightOperand(lessEqualExpression));
     }
 
     @Override
     public NativeData visit(GreaterEqualExpression greaterEqualExpression) {
-        return evaluateBinaryNumericExpression(greaterEqualExpression, (a, b) -> new NativeBool(a.getValue() >= b.getValue()));
+        return NativeBool.of(evaluateLeftOperand(greaterEqualExpression) >= evaluateRightOperand(greaterEqualExpression));
     }
 
     @Override
     public NativeData visit(EqualsExpression equalsExpression) {
-        return new NativeBool(evaluate(equalsExpression.getLeft()).equals(evaluate(equalsExpression.getRight())));
+        return NativeBool.of(evaluate(equalsExpression.getLeft()).equals(evaluate(equalsExpression.getRight())));
     }
 
     @Override
     public NativeData visit(NotEqualExpression notEqualExpression) {
-        return new NativeBool(!evaluate(notEqualExpression.getLeft()).equals(evaluate(notEqualExpression.getRight())));
+        return NativeBool.of(!evaluate(notEqualExpression.getLeft()).equals(evaluate(notEqualExpression.getRight())));
     }
 
     @Override
@@ -172,13 +266,13 @@ public class Interpreter implements AstVisitor<NativeData> {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, andExpression);
         }
         if (!((NativeBool) leftValue).getValue()) {
-            return new NativeBool(false);
+            return NativeBool.FALSE;
         }
         NativeData rightValue = evaluate(andExpression.getRight());
         if (!(rightValue instanceof NativeBool)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, andExpression);
         }
-        return new NativeBool(((NativeBool) rightValue).getValue());
+        return rightValue;
     }
 
     @Override
@@ -188,13 +282,13 @@ public class Interpreter implements AstVisitor<NativeData> {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, orExpression);
         }
         if (((NativeBool) leftValue).getValue()) {
-            return new NativeBool(true);
+            return NativeBool.TRUE;
         }
         NativeData rightValue = evaluate(orExpression.getRight());
         if (!(rightValue instanceof NativeBool)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, orExpression);
         }
-        return new NativeBool(((NativeBool) rightValue).getValue());
+        return rightValue;
     }
 
     @Override
@@ -204,7 +298,7 @@ public class Interpreter implements AstVisitor<NativeData> {
         if (!(leftValue instanceof NativeString && rightValue instanceof NativeString)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, concatenationExpression);
         }
-        return new NativeString(((NativeString) leftValue).getValue() + ((NativeString) rightValue).getValue());
+        return ((NativeString) leftValue).concatenate((NativeString) rightValue);
     }
 
     @Override
@@ -214,15 +308,16 @@ public class Interpreter implements AstVisitor<NativeData> {
         if (!(rightValue instanceof NativeList)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, consExpression);
         }
-        Deque<NativeData> newItems = new LinkedList<>(((NativeList) rightValue).getItems());
-        newItems.addFirst(leftValue);
-        return new NativeList(newItems);
+        return ((NativeList) rightValue).prepend(leftValue);
     }
 
     @Override
     public NativeData visit(DefinitionExpression definitionExpression) {
         NativeData value = evaluate(definitionExpression.getDefinition());
-        environment.addBinding(definitionExpression.getSymbol(), value);
+        environment.addBinding(definitionExpression.getSlot(), value);
+        if (definitionExpression.getDefinition() instanceof FunctionExpression) {
+            ((UserFunction) value).bindToOwnSlot(definitionExpression.getSlot());
+        }
         return value;
     }
 
@@ -232,29 +327,133 @@ public class Interpreter implements AstVisitor<NativeData> {
         if (!(conditionValue instanceof NativeBool)) {
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, ifExpression);
         }
-        return evaluateBlock(((NativeBool) conditionValue).getValue() ? ifExpression.getConsequent() : ifExpression.getAlternative());
+        if (((NativeBool) conditionValue).getValue()) {
+            return evaluateBlock(ifExpression.getConsequent(), ifExpression.getConsequentFrameSize());
+        }
+        return evaluateBlock(ifExpression.getAlternative(), ifExpression.getAlternativeFrameSize());
     }
 
     @Override
     public NativeData visit(FunctionExpression functionExpression) {
-        // TODO: can't do recursion yet
-        return new UserFunction(functionExpression.getParameters(), functionExpression.getDefinition(), environment.makeClosure());
+        Environment closure = environment.makeClosure(functionExpression.getCaptureDepths(), functionExpression.getCaptureSlots());
+        return new UserFunction(functionExpression, closure);
     }
 
     @Override
     public NativeData visit(CallExpression callExpression) {
         NativeData calleeValue = evaluate(callExpression.getCallee());
-        if (!(calleeValue instanceof NativeFunction)) {
-            throw reportErrorAtExpression(ErrorType.UNCALLABLE_VALUE, callExpression);
-        }
         List<Expression> argumentExpressions = callExpression.getArguments();
+        int callSite = callExpression.getCallSite();
+        if (!callSiteCache.hasChecked(callSite, calleeValue, argumentExpressions.size())) {
+            if (!(calleeValue instanceof NativeFunction)) {
+                throw reportErrorAtExpression(ErrorType.UNCALLABLE_VALUE, callExpression);
+            }
+            if (argumentExpressions.size() != ((NativeFunction) calleeValue).getArity()) {
+                throw makeErrorContext().reportRuntimeError(ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS, calleeValue.makeValueRepresentation(), callExpression.getLineNumber());
+            }
+            callSiteCache.recordChecked(callSite, (NativeFunction) calleeValue, argumentExpressions.size());
+        }
         NativeFunction functionValue = (NativeFunction) calleeValue;
-        if (argumentExpressions.size() != functionValue.getArity()) {
-            throw ioManager.reportRuntimeError(ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS, functionValue.makeValueRepresentation(), callExpression.getLineNumber());
+        List<NativeData> argumentValues = new ArrayList<>(argumentExpressions.size());
+        for (Expression argumentExpression : argumentExpressions) {
+            argumentValues.add(evaluate(argumentExpression));
+        }
+        if (callExpression.getTailCall() && functionValue instanceof UserFunction) {
+            return deferTailCall((UserFunction) functionValue, argumentValues);
+        }
+        return callFunction(functionValue, argumentValues, callExpression.getLineNumber());
+    }
+
+    // Calls the function on this interpreter's call stack, so that a user function runs on this interpreter too
+    public NativeData callFunction(NativeFunction function, List<NativeData> arguments, int callLineNumber) {
+        pushCall(function, callLineNumber);
+        try {
+            if (function instanceof UserFunction) {
+                return runUserFunction((UserFunction) function, arguments);
+            }
+            consumeSteps(1);
+            return function.call(arguments, callStackIoManager);
+        } finally {
+            callDepth--;
+        }
+    }
+
+    // Runs the function to completion, following its tail calls, without adding to the call stack
+    public NativeData runUserFunction(UserFunction function, List<NativeData> arguments) {
+        Environment callerEnvironment = environment;
+        try {
+            environment = function.makeCallEnvironment();
+            while (true) {
+                consumeSteps(1);
+                for (int i = 0; i < arguments.size(); i++) {
+                    environment.addBinding(i, arguments.get(i));
+                }
+                FunctionExpression functionExpression = function.getFunctionExpression();
+                CompiledBody compiledBody = JitCompiler.lookUpCompiledBody(functionExpression);
+                NativeData result = compiledBody != null
+                        ? compiledBody.execute(environment.getCurrentFrame(), callStackIoManager)
+                        : evaluateBody(functionExpression.getDefinition());
+                UserFunction tailCallee = pendingTailCallee;
+                if (tailCallee == null) {
+                    return result;
+                }
+                pendingTailCallee = null;
+                if (tailCallee == function) {
+                    environment.clearCurrentFrame(); // Self tail calls reuse the frame in place
+                } else {
+                    function = tailCallee;
+                    environment = function.makeCallEnvironment();
+                }
+                arguments = pendingTailCallArguments;
+            }
+        } finally {
+            environment = callerEnvironment;
+        }
+    }
+
+    // Only for calls in tail position of a function body run by runUserFunction
+    public NativeData deferTailCall(UserFunction function, List<NativeData> arguments) {
+        pendingTailCallee = function;
+        pendingTailCallArguments = arguments;
+        return null;
+    }
+
+    // Wraps the interpreter's input/output in the function scopes of the calls in progress
+    public IoManager makeErrorContext() {
+        IoManager errorContext = ioManager;
+        for (int i = 0; i < callDepth; i++) {
+            errorContext = new FunctionIoManagerWrapper(errorContext, callees[i].makeValueRepresentation(), callLineNumbers[i]);
+        }
+        return errorContext;
+    }
+
+    // Builtins that do work in proportion to their arguments charge for it through their call stack io manager
+    public void consumeSteps(long steps) {
+        stepsLeftInBatch -= steps;
+        if (stepsLeftInBatch < 0) {
+            stepsLeftInBatch = executionLimits.claimSteps(-stepsLeftInBatch, makeErrorContext());
+        }
+    }
+
+    private void pushCall(NativeFunction function, int callLineNumber) {
+        if (callDepth >= maxCallDepth) {
+            throw makeErrorContext().reportRuntimeError(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, function.makeValueRepresentation(), callLineNumber);
+        }
+        if (callDepth == callees.length) {
+            callees = Arrays.copyOf(callees, callDepth * 2);
+            callLineNumbers = Arrays.copyOf(callLineNumbers, callDepth * 2);
         }
-        List<NativeData> argumentValues = new ArrayList<>();
-        argumentExpressions.forEach(expression -> argumentValues.add(evaluate(expression)));
-        return functionValue.call(argumentValues, new FunctionIoManagerWrapper(ioManager, functionValue.makeValueRepresentation(), callExpression.getLineNumber()));
+        callees[callDepth] = function;
+        callLineNumbers[callDepth] = callLineNumber;
+        callDepth++;
+    }
+
+    private NativeData evaluateBody(List<Expression> body) {
+        NativeData result = null;
+        for (Expression expression : body) {
+            result = evaluate(expression);
+        }
+        return result;
     }
 
     private NativeData evaluate(Expression expression) {
@@ -263,26 +462,224 @@ public class Interpreter implements AstVisitor<NativeData> {
 
     private <T extends LineNumbered & Expression>
     UnwindingException reportErrorAtExpression(ErrorType errorType, T expression) {
-        return ioManager.reportStaticError(errorType, expression.getClass().getSimpleName(), expression.getLineNumber());
+        return makeErrorContext().reportStaticError(errorType, expression.getClass().getSimpleName(), expression.getLineNumber());
     }
 
-    private <T extends Binary & Expression>
-    NativeData evaluateBinaryNumericExpression(T expression, BiFunction<NativeNumber, NativeNumber, NativeData> operation) {
-        NativeData leftValue = evaluate(expression.getLeft());
-        NativeData rightValue = evaluate(expression.getRight());
-        if (!(leftValue instanceof NativeNumber && rightValue instanceof NativeNumber)) {
+    private <T extends Binary & Expression> double evaluateLeftOperand(T expression) {
+        try {
+            return expression.getLeft().accept(numericEvaluator);
+        } catch (NotANumberException e) {
+            evaluate(expression.getRight()); // Operand types are only checked once both operands have been evaluated
             throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, expression);
         }
-        return operation.apply((NativeNumber) leftValue, (NativeNumber) rightValue);
     }
 
-    private NativeData evaluateBlock(List<Expression> block) {
-        environment.pushNewFrame();
-        NativeData result = null;
-        for (Expression expression : block) {
-            result = evaluate(expression);
+    private <T extends Binary & Expression> double evaluateRightOperand(T expression) {
+        return evaluateOperand(expression.getRight(), expression);
+    }
+
+    private <T extends LineNumbered & Expression> double evaluateOperand(Expression operand, T expression) {
+        try {
+            return operand.accept(numericEvaluator);
+        } catch (NotANumberException e) {
+            throw reportErrorAtExpression(ErrorType.INCOMPATIBLE_TYPES, expression);
+        }
+    }
+
+    private ConstantFolder getConstantFolder() {
+        if (constantFolder == null) {
+            constantFolder = new ConstantFolder();
+        }
+        return constantFolder;
+    }
+
+    private Resolver getResolver() {
+        if (resolver == null) {
+            resolver = new Resolver();
+        }
+        return resolver;
+    }
+
+    private NativeData evaluateBlock(List<Expression> block, int frameSize) {
+        Environment enclosingEnvironment = environment;
+        try {
+            environment = environment.makeChild(frameSize);
+            return evaluateBody(block);
+        } finally {
+            environment = enclosingEnvironment;
+        }
+    }
+
+    // Evaluates the operands of arithmetic and comparisons. Nested arithmetic is computed on primitive doubles, which
+    // are only boxed once they leave arithmetic. Any other operand is evaluated to a value, and one that isn't a number
+    // is thrown back to the operation that uses it, which reports the error
+    private class NumericEvaluator implements NumericAstVisitor {
+
+        @Override
+        public double visit(NilExpression nilExpression) {
+            return evaluateToNumber(nilExpression);
+        }
+
+        @Override
+        public double visit(TrueExpression trueExpression) {
+            return evaluateToNumber(trueExpression);
+        }
+
+        @Override
+        public double visit(FalseExpression falseExpression) {
+            return evaluateToNumber(falseExpression);
+        }
+
+        @Override
+        public double visit(NumberExpression numberExpression) {
+            return numberExpression.getValue();
+        }
+
+        @Override
+        public double visit(StringExpression stringExpression) {
+            return evaluateToNumber(stringExpression);
+        }
+
+        @Override
+        public double visit(ListExpression listExpression) {
+            return evaluateToNumber(listExpression);
+        }
+
+        @Override
+        public double visit(CallExpression callExpression) {
+            return evaluateToNumber(callExpression);
+        }
+
+        @Override
+        public double visit(IdentifierExpression identifierExpression) {
+            return evaluateToNumber(identifierExpression);
+        }
+
+        @Override
+        public double visit(DefinitionExpression definitionExpression) {
+            return evaluateToNumber(definitionExpression);
+        }
+
+        @Override
+        public double visit(IfExpression ifExpression) {
+            return evaluateToNumber(ifExpression);
+        }
+
+        @Override
+        public double visit(FunctionExpression functionExpression) {
+            return evaluateToNumber(functionExpression);
+        }
+
+        @Override
+        public double visit(GroupExpression groupExpression) {
+            return groupExpression.getInside().accept(this);
+        }
+
+        @Override
+        public double visit(NegationExpression negationExpression) {
+            return -evaluateOperand(negationExpression.getInside(), negationExpression);
+        }
+
+        @Override
+        public double visit(NotExpression notExpression) {
+            return evaluateToNumber(notExpression);
+        }
+
+        @Override
+        public double visit(AdditionExpression additionExpression) {
+            return evaluateLeftOperand(additionExpression) + evaluateRightOperand(additionExpression);
+        }
+
+        @Override
+        public double visit(SubtractionExpression subtractionExpression) {
+            return evaluateLeftOperand(subtractionExpression) - evaluateRightOperand(subtractionExpression);
+        }
+
+        @Override
+        public double visit(MultiplicationExpression multiplicationExpression) {
+            return evaluateLeftOperand(multiplicationExpression) * evaluateRightOperand(multiplicationExpression);
+        }
+
+        @Override
+        public double visit(DivisionExpression divisionExpression) {
+            double quotient = evaluateLeftOperand(divisionExpression) / evaluateRightOperand(divisionExpression);
+            if (NativeNumber.isInvalid(quotient)) {
+                throw reportErrorAtExpression(ErrorType.DIVISION_BY_ZERO, divisionExpression);
+            }
+            return quotient;
+        }
+
+        @Override
+        public double visit(ExponentExpression exponentExpression) {
+            return Math.pow(evaluateLeftOperand(exponentExpression), evaluateRightOperand(exponentExpression));
+        }
+
+        @Override
+        public double visit(LessThanExpression lessThanExpression) {
+            return evaluateToNumber(lessThanExpression);
+        }
+
+        @Override
+        public double visit(GreaterThanExpression greaterThanExpression) {
+            return evaluateToNumber(greaterThanExpression);
+        }
+
+        @Override
+        public double visit(LessEqualExpression lessEqualExpression) {
+            return evaluateToNumber(lessEqualExpression);
+        }
+
+        @Override
+        public double visit(GreaterEqualExpression greaterEqualExpression) {
+            return evaluateToNumber(greaterEqualExpression);
+        }
+
+        @Override
+        public double visit(EqualsExpression equalsExpression) {
+            return evaluateToNumber(equalsExpression);
+        }
+
+        @Override
+        public double visit(NotEqualExpression notEqualExpression) {
+            return evaluateToNumber(notEqualExpression);
+        }
+
+        @Override
+        public double visit(AndExpression andExpression) {
+            return evaluateToNumber(andExpression);
+        }
+
+        @Override
+        public double visit(OrExpression orExpression) {
+            return evaluateToNumber(orExpression);
+        }
+
+        @Override
+        public double visit(ConcatenationExpression concatenationExpression) {
+            return evaluateToNumber(concatenationExpression);
+        }
+
+        @Override
+        public double visit(ConsExpression consExpression) {
+            return evaluateToNumber(consExpression);
+        }
+
+        private double evaluateToNumber(Expression expression) {
+            NativeData value = evaluate(expression);
+            if (!(value instanceof NativeNumber)) {
+                throw NOT_A_NUMBER;
+            }
+            return ((NativeNumber) value).getValue();
+        }
+    }
+
+    // Carries no stack trace, since it never leaves the interpreter
+    private static class NotANumberException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private NotANumberException() {
+            super(null, null, false, false);
         }
-        environment.popCurrentFrame();
-        return result;
     }
 }
@@ -0,0 +1,85 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.SynchronizedIoManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Calls a one-argument function on every item of a list, splitting the items between the threads of the common
+// fork/join pool. Each task calls on an interpreter of its own, so only the io manager and the execution limits are
+// shared between threads. The tasks carry on from the caller's call context: their calls count on top of its call
+// depth, and their errors are traced through its calls
+public class ParallelCallTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final NativeFunction function;
+    private final List<NativeData> items;
+    private final NativeData[] results;
+    private final SynchronizedIoManager ioManager;
+    private final ExecutionLimits executionLimits;
+    private final int initialCallDepth;
+    private final int itemsPerTask;
+    private final int start;
+    private final int end;
+
+    private ParallelCallTask(NativeFunction function, List<NativeData> items, NativeData[] results,
+                             SynchronizedIoManager ioManager, ExecutionLimits executionLimits, int initialCallDepth,
+                             int itemsPerTask, int start, int end) {
+        this.function = function;
+        this.items = items;
+        this.results = results;
+        this.ioManager = ioManager;
+        this.executionLimits = executionLimits;
+        this.initialCallDepth = initialCallDepth;
+        this.itemsPerTask = itemsPerTask;
+        this.start = start;
+        this.end = end;
+    }
+
+    // Returns the results in the order of the items
+    public static NativeData[] callOnEach(NativeFunction function, List<NativeData> items, IoManager ioManager) {
+        ExecutionLimits executionLimits = null;
+        int initialCallDepth = 0;
+        if (ioManager instanceof CallContextIoManager) {
+            executionLimits = ((CallContextIoManager) ioManager).getExecutionLimits();
+            initialCallDepth = ((CallContextIoManager) ioManager).getCallDepth();
+        }
+        NativeData[] results = new NativeData[items.size()];
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int itemsPerTask = Math.max(1, items.size() / (TASKS_PER_THREAD * pool.getParallelism()));
+        pool.invoke(new ParallelCallTask(function, items, results, new SynchronizedIoManager(ioManager), executionLimits,
+                initialCallDepth, itemsPerTask, 0, items.size()));
+        return results;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start <= itemsPerTask) {
+            // User functions run in environments of their own, so the interpreter's is never used
+            Interpreter interpreter = new Interpreter(ioManager, new Environment(BuiltinsFrame.INSTANCE), executionLimits, true,
+                    initialCallDepth);
+            for (int i = start; i < end && !ioManager.hasReportedError(); i++) {
+                results[i] = function.call(Collections.singletonList(items.get(i)), interpreter.getCallStackIoManager());
+            }
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        ParallelCallTask right = new ParallelCallTask(function, items, results, ioManager, executionLimits, initialCallDepth,
+                itemsPerTask, middle, end);
+        right.fork();
+        try {
+            new ParallelCallTask(function, items, results, ioManager, executionLimits, initialCallDepth, itemsPerTask, start,
+                    middle).compute();
+        } finally {
+            right.join(); // Nothing may still be running once the call unwinds
+        }
+    }
+}
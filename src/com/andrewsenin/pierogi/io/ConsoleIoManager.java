@@ -1,21 +1,62 @@
 package com.andrewsenin.pierogi.io;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 public class ConsoleIoManager implements IoManager {
 
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     private final Scanner inputScanner = new Scanner(System.in);
+    private final Writer output = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
 
     @Override
     public void print(String message) {
-        System.out.print(message);
+        try {
+            output.write(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void printLine(String message) {
+        try {
+            output.write(message);
+            output.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Appendable getAppendableOutput() {
+        return output;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
     public String requestInput() {
+        flush();
         return inputScanner.nextLine();
     }
 
+    // The file is mapped rather than read, so even very large scripts are never copied into the heap whole
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return MappedSource.map(file.toPath());
+    }
+
     @Override
     public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
         printErrorMessage(errorType, near, lineNumber);
@@ -24,6 +65,7 @@ public class ConsoleIoManager implements IoManager {
 
     @Override
     public UnwindingException reportRuntimeError(ErrorType errorType) {
+        flush();
         System.err.println(errorType.name());
         return new StaticError();
     }
@@ -36,10 +78,13 @@ public class ConsoleIoManager implements IoManager {
 
     @Override
     public void recordFunctionScope(String functionName, int lineNumber) {
+        flush();
         System.err.println("In " + functionName + " on line " + lineNumber);
     }
 
+    // Everything printed before the error is written out first, so that the two streams stay in order on a terminal
     private void printErrorMessage(ErrorType errorType, String near, int lineNumber) {
+        flush();
         System.err.println("Error on line " + lineNumber + ": " + errorType.name() + " near " + near);
     }
 }
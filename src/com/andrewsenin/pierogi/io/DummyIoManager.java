@@ -1,15 +1,30 @@
 package com.andrewsenin.pierogi.io;
 
+import java.io.File;
+
 public class DummyIoManager implements IoManager {
     @Override
     public void print(String message) {
     }
 
+    @Override
+    public void printLine(String message) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
     @Override
     public String requestInput() {
         return "";
     }
 
+    @Override
+    public CharSequence readSourceFile(File file) {
+        return "";
+    }
+
     @Override
     public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
         return new UnwindingException();
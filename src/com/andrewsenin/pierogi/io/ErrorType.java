@@ -12,5 +12,9 @@ public enum ErrorType {
     UNCALLABLE_VALUE,
     INCORRECT_NUMBER_OF_ARGUMENTS,
     UNKNOWN_ESCAPE_SEQUENCE,
-    BUILTIN_FUNCTION_CONTRACT_VIOLATION
+    BUILTIN_FUNCTION_CONTRACT_VIOLATION,
+    STEP_LIMIT_EXCEEDED,
+    TIME_LIMIT_EXCEEDED,
+    CALL_DEPTH_LIMIT_EXCEEDED,
+    EXECUTION_CANCELLED
 }
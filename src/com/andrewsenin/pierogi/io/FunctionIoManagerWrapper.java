@@ -1,5 +1,8 @@
 package com.andrewsenin.pierogi.io;
 
+import java.io.File;
+import java.io.IOException;
+
 public class FunctionIoManagerWrapper implements IoManager {
 
     private final IoManager ioManager;
@@ -17,11 +20,36 @@ public class FunctionIoManagerWrapper implements IoManager {
         ioManager.print(message);
     }
 
+    @Override
+    public void printLine(String message) {
+        ioManager.printLine(message);
+    }
+
+    @Override
+    public Appendable getAppendableOutput() {
+        return ioManager.getAppendableOutput();
+    }
+
+    @Override
+    public Object getOutputLock() {
+        return ioManager.getOutputLock();
+    }
+
+    @Override
+    public void flush() {
+        ioManager.flush();
+    }
+
     @Override
     public String requestInput() {
         return ioManager.requestInput();
     }
 
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return ioManager.readSourceFile(file);
+    }
+
     @Override
     public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
         ioManager.recordFunctionScope(functionRepresentation, functionLineNumber);
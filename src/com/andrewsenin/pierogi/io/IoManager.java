@@ -1,10 +1,48 @@
 package com.andrewsenin.pierogi.io;
 
+import java.io.File;
+import java.io.IOException;
+
 public interface IoManager {
     void print(String message);
 
+    void printLine(String message);
+
+    // Values are written into this piece by piece, so their whole representation is never built as one string
+    default Appendable getAppendableOutput() {
+        return new Appendable() {
+            @Override
+            public Appendable append(CharSequence characters) {
+                print(characters.toString());
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence characters, int start, int end) {
+                print(characters.subSequence(start, end).toString());
+                return this;
+            }
+
+            @Override
+            public Appendable append(char character) {
+                print(String.valueOf(character));
+                return this;
+            }
+        };
+    }
+
+    // Held while a value is written piece by piece, so that output from other threads can't land in the middle of it
+    default Object getOutputLock() {
+        return this;
+    }
+
+    // Output may be buffered until this is called
+    void flush();
+
     String requestInput();
 
+    CharSequence readSourceFile(File file) throws IOException;
+
     UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber);
 
     UnwindingException reportRuntimeError(ErrorType errorType);
@@ -0,0 +1,171 @@
+package com.andrewsenin.pierogi.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The characters of a UTF-8 encoded file, decoded straight from the mapped bytes as they are read. Sources are read
+// mostly front to back, so a cursor remembers where the last character was found, and checkpoints at regular
+// intervals bound the cost of jumping anywhere else. Not safe for use by several threads at once
+public class MappedSource implements CharSequence {
+
+    private static final int CHECKPOINT_INTERVAL = 1 << 12;
+    private static final int SHORT_DISTANCE = 64;
+
+    private final ByteBuffer bytes;
+    private final int length;
+    private final boolean isAscii;
+    private final int[] checkpointCharacterIndices;
+    private final int[] checkpointByteOffsets;
+    private final int checkpointCount;
+    private int cursorCharacterIndex = 0;
+    private int cursorByteOffset = 0;
+
+    public MappedSource(ByteBuffer bytes) throws MalformedInputException {
+        this.bytes = bytes;
+        checkpointCharacterIndices = new int[bytes.limit() / CHECKPOINT_INTERVAL + 1];
+        checkpointByteOffsets = new int[checkpointCharacterIndices.length];
+        int characterIndex = 0;
+        int byteOffset = 0;
+        int checkpoint = 0;
+        while (byteOffset < bytes.limit()) {
+            if (characterIndex >= checkpoint * CHECKPOINT_INTERVAL) { // A surrogate pair may push it one past
+                checkpointCharacterIndices[checkpoint] = characterIndex;
+                checkpointByteOffsets[checkpoint] = byteOffset;
+                checkpoint++;
+            }
+            int sequenceLength = checkSequence(byteOffset);
+            characterIndex += sequenceLength == 4 ? 2 : 1;
+            byteOffset += sequenceLength;
+        }
+        length = characterIndex;
+        isAscii = length == bytes.limit();
+        checkpointCount = checkpoint;
+    }
+
+    public static MappedSource map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Source file " + path + " is too large to map");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public ByteBuffer getBytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        if (isAscii) { // Characters and bytes line up
+            return (char) bytes.get(index);
+        }
+        if (index < cursorCharacterIndex || index - cursorCharacterIndex > SHORT_DISTANCE) {
+            moveCursorNear(index);
+        }
+        while (true) {
+            byte leadByte = bytes.get(cursorByteOffset);
+            if (leadByte >= 0) {
+                if (index == cursorCharacterIndex) {
+                    return (char) leadByte;
+                }
+                cursorCharacterIndex++;
+                cursorByteOffset++;
+                continue;
+            }
+            int sequenceLength = measureSequence(cursorByteOffset);
+            int characterCount = sequenceLength == 4 ? 2 : 1;
+            if (index < cursorCharacterIndex + characterCount) {
+                int codePoint = decodeCodePoint(cursorByteOffset, sequenceLength);
+                if (characterCount == 1) {
+                    return (char) codePoint;
+                }
+                return index == cursorCharacterIndex ? Character.highSurrogate(codePoint) : Character.lowSurrogate(codePoint);
+            }
+            cursorCharacterIndex += characterCount;
+            cursorByteOffset += sequenceLength;
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        StringBuilder stringBuilder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            stringBuilder.append(charAt(i));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    // Leaves the cursor at or before the index, walking back from it when that is closer than the nearest checkpoint
+    private void moveCursorNear(int index) {
+        int checkpoint = Math.min(index / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        if (checkpointCharacterIndices[checkpoint] > index) {
+            checkpoint--;
+        }
+        int checkpointDistance = index - checkpointCharacterIndices[checkpoint];
+        if (index >= cursorCharacterIndex && index - cursorCharacterIndex <= checkpointDistance) {
+            return;
+        }
+        if (index < cursorCharacterIndex && cursorCharacterIndex - index <= checkpointDistance) {
+            while (cursorCharacterIndex > index) {
+                do {
+                    cursorByteOffset--;
+                } while ((bytes.get(cursorByteOffset) & 0xC0) == 0x80);
+                cursorCharacterIndex -= measureSequence(cursorByteOffset) == 4 ? 2 : 1;
+            }
+            return;
+        }
+        cursorCharacterIndex = checkpointCharacterIndices[checkpoint];
+        cursorByteOffset = checkpointByteOffsets[checkpoint];
+    }
+
+    private int measureSequence(int byteOffset) {
+        int leadByte = bytes.get(byteOffset) & 0xFF;
+        return leadByte < 0x80 ? 1 : leadByte < 0xE0 ? 2 : leadByte < 0xF0 ? 3 : 4;
+    }
+
+    private int decodeCodePoint(int byteOffset, int sequenceLength) {
+        int codePoint = bytes.get(byteOffset) & (sequenceLength == 1 ? 0x7F : 0x7F >> sequenceLength);
+        for (int i = 1; i < sequenceLength; i++) {
+            codePoint = codePoint << 6 | bytes.get(byteOffset + i) & 0x3F;
+        }
+        return codePoint;
+    }
+
+    private int checkSequence(int byteOffset) throws MalformedInputException {
+        int leadByte = bytes.get(byteOffset) & 0xFF;
+        if (leadByte >= 0x80 && (leadByte < 0xC2 || leadByte > 0xF4)) {
+            throw new MalformedInputException(1);
+        }
+        int sequenceLength = measureSequence(byteOffset);
+        if (byteOffset + sequenceLength > bytes.limit()) {
+            throw new MalformedInputException(bytes.limit() - byteOffset);
+        }
+        for (int i = 1; i < sequenceLength; i++) {
+            if ((bytes.get(byteOffset + i) & 0xC0) != 0x80) {
+                throw new MalformedInputException(i);
+            }
+        }
+        return sequenceLength;
+    }
+}
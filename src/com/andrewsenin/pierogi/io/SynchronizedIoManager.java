@@ -0,0 +1,111 @@
+package com.andrewsenin.pierogi.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared by the threads working on one parallel call. Their input and output is serialized, and only the first error
+// is reported, since the others are unwound along with it
+public class SynchronizedIoManager implements IoManager {
+
+    private final IoManager ioManager;
+    // Function scopes lead up to an error on the same thread, so they are held back until that error is reported
+    private final ThreadLocal<List<FunctionScope>> pendingFunctionScopes = ThreadLocal.withInitial(ArrayList::new);
+    private volatile boolean hasReportedError = false;
+
+    public SynchronizedIoManager(IoManager ioManager) {
+        this.ioManager = ioManager;
+    }
+
+    public boolean hasReportedError() {
+        return hasReportedError;
+    }
+
+    @Override
+    public synchronized void print(String message) {
+        ioManager.print(message);
+    }
+
+    @Override
+    public synchronized void printLine(String message) {
+        ioManager.printLine(message);
+    }
+
+    // Nested parallel calls print under the same lock as the outermost one
+    @Override
+    public Object getOutputLock() {
+        return ioManager.getOutputLock();
+    }
+
+    @Override
+    public synchronized void flush() {
+        ioManager.flush();
+    }
+
+    @Override
+    public synchronized String requestInput() {
+        return ioManager.requestInput();
+    }
+
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return ioManager.readSourceFile(file);
+    }
+
+    @Override
+    public synchronized UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
+        if (!startReportingError()) {
+            return new StaticError();
+        }
+        return ioManager.reportStaticError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public synchronized UnwindingException reportRuntimeError(ErrorType errorType) {
+        if (!startReportingError()) {
+            return new RuntimeError();
+        }
+        return ioManager.reportRuntimeError(errorType);
+    }
+
+    @Override
+    public synchronized UnwindingException reportRuntimeError(ErrorType errorType, String near, int lineNumber) {
+        if (!startReportingError()) {
+            return new RuntimeError();
+        }
+        return ioManager.reportRuntimeError(errorType, near, lineNumber);
+    }
+
+    @Override
+    public void recordFunctionScope(String functionName, int lineNumber) {
+        pendingFunctionScopes.get().add(new FunctionScope(functionName, lineNumber));
+    }
+
+    // Returns whether this is the first error, after recording the function scopes that lead up to it
+    private boolean startReportingError() {
+        List<FunctionScope> functionScopes = pendingFunctionScopes.get();
+        try {
+            if (hasReportedError) {
+                return false;
+            }
+            hasReportedError = true;
+            for (FunctionScope functionScope : functionScopes) {
+                ioManager.recordFunctionScope(functionScope.functionName, functionScope.lineNumber);
+            }
+            return true;
+        } finally {
+            functionScopes.clear();
+        }
+    }
+
+    private static class FunctionScope {
+        private final String functionName;
+        private final int lineNumber;
+
+        private FunctionScope(String functionName, int lineNumber) {
+            this.functionName = functionName;
+            this.lineNumber = lineNumber;
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.andrewsenin.pierogi.io;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestIoManager implements IoManager {
 
     private String output = "";
@@ -7,37 +12,52 @@ public class TestIoManager implements IoManager {
     private ErrorType mostRecentErrorType = null;
     private int mostRecentErrorLineNumber = 0;
     private String mostRecentErrorLexeme = "";
+    private List<String> mostRecentErrorTrace = new ArrayList<>(); // Innermost function scope first
+    private List<String> pendingFunctionScopes = new ArrayList<>();
+    private int errorCount = 0;
 
     @Override
     public void print(String message) {
         output += message;
     }
 
+    @Override
+    public void printLine(String message) {
+        output += message + "\n";
+    }
+
+    @Override
+    public void flush() {
+    }
+
     @Override
     public String requestInput() {
         return input;
     }
 
+    @Override
+    public CharSequence readSourceFile(File file) throws IOException {
+        return MappedSource.map(file.toPath());
+    }
+
     @Override
     public UnwindingException reportStaticError(ErrorType errorType, String near, int lineNumber) {
-        mostRecentErrorType = errorType;
-        mostRecentErrorLineNumber = lineNumber;
-        mostRecentErrorLexeme = near;
-        return new UnwindingException();
+        return recordError(errorType, near, lineNumber);
     }
 
     @Override
     public UnwindingException reportRuntimeError(ErrorType errorType) {
-        return new UnwindingException();
+        return reportRuntimeError(errorType, "", 0);
     }
 
     @Override
     public UnwindingException reportRuntimeError(ErrorType errorType, String near, int lineNumber) {
-        return new UnwindingException();
+        return recordError(errorType, near, lineNumber);
     }
 
     @Override
     public void recordFunctionScope(String functionName, int lineNumber) {
+        pendingFunctionScopes.add(functionName + " on line " + lineNumber);
     }
 
     public String getOutput() {
@@ -59,4 +79,22 @@ public class TestIoManager implements IoManager {
     public String getMostRecentErrorLexeme() {
         return mostRecentErrorLexeme;
     }
+
+    public List<String> getMostRecentErrorTrace() {
+        return mostRecentErrorTrace;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    private UnwindingException recordError(ErrorType errorType, String near, int lineNumber) {
+        mostRecentErrorType = errorType;
+        mostRecentErrorLineNumber = lineNumber;
+        mostRecentErrorLexeme = near;
+        mostRecentErrorTrace = pendingFunctionScopes;
+        pendingFunctionScopes = new ArrayList<>();
+        errorCount++;
+        return new UnwindingException();
+    }
 }
@@ -0,0 +1,49 @@
+package com.andrewsenin.pierogi.io;
+
+import java.io.IOException;
+
+// Passes through up to a limited number of characters, then stops whatever is writing by throwing, so that huge
+// values aren't walked to the end only to be thrown away
+public class TruncatingAppendable implements Appendable {
+
+    private final Appendable output;
+    private int remainingCharacters;
+
+    public TruncatingAppendable(Appendable output, int maxCharacters) {
+        this.output = output;
+        this.remainingCharacters = maxCharacters;
+    }
+
+    @Override
+    public Appendable append(CharSequence characters) throws IOException {
+        return append(characters, 0, characters.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence characters, int start, int end) throws IOException {
+        int length = end - start;
+        if (length > remainingCharacters) {
+            output.append(characters, start, start + remainingCharacters);
+            remainingCharacters = 0;
+            throw new LimitReachedException();
+        }
+        output.append(characters, start, end);
+        remainingCharacters -= length;
+        return this;
+    }
+
+    @Override
+    public Appendable append(char character) throws IOException {
+        if (remainingCharacters == 0) {
+            throw new LimitReachedException();
+        }
+        output.append(character);
+        remainingCharacters--;
+        return this;
+    }
+
+    public static class LimitReachedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -1,4 +1,6 @@
 package com.andrewsenin.pierogi.io;
 
 public class UnwindingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
 }
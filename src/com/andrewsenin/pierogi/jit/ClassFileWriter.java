@@ -0,0 +1,218 @@
+package com.andrewsenin.pierogi.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Assembles a single class file. Targets version 49 so that the verifier infers types itself and no stack map
+// frames have to be computed
+public class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final Map<String, Integer> constantIndices = new HashMap<>();
+    private int constantPoolCount = 1;
+
+    private final String className;
+    private final String superName;
+    private final String[] interfaceNames;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    public ClassFileWriter(String className, String superName, String... interfaceNames) {
+        this.className = className;
+        this.superName = superName;
+        this.interfaceNames = interfaceNames;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public int addUtf8(String value) {
+        return addConstant("utf8:" + value, 1, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    public int addInteger(int value) {
+        return addConstant("int:" + value, 1, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    // Double constants take up two entries in the constant pool
+    public int addDouble(double value) {
+        return addConstant("double:" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeDouble(value);
+        });
+    }
+
+    public int addClass(String internalName) {
+        int nameIndex = addUtf8(internalName);
+        return addConstant("class:" + internalName, 1, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    public int addString(String value) {
+        int valueIndex = addUtf8(value);
+        return addConstant("string:" + value, 1, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(valueIndex);
+        });
+    }
+
+    public int addFieldReference(String ownerName, String name, String descriptor) {
+        return addMemberReference(CONSTANT_FIELD_REF, ownerName, name, descriptor);
+    }
+
+    public int addMethodReference(String ownerName, String name, String descriptor) {
+        return addMemberReference(CONSTANT_METHOD_REF, ownerName, name, descriptor);
+    }
+
+    public int addInterfaceMethodReference(String ownerName, String name, String descriptor) {
+        return addMemberReference(CONSTANT_INTERFACE_METHOD_REF, ownerName, name, descriptor);
+    }
+
+    public void addField(int accessFlags, String name, String descriptor) {
+        fields.add(writeMember(accessFlags, name, descriptor, null));
+    }
+
+    public void addMethod(int accessFlags, String name, String descriptor, CodeBuilder code) {
+        methods.add(writeMember(accessFlags, name, descriptor, code));
+    }
+
+    public byte[] toByteArray() {
+        int thisIndex = addClass(className);
+        int superIndex = addClass(superName);
+        int[] interfaceIndices = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaceIndices[i] = addClass(interfaceNames[i]);
+        }
+        return write(out -> {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(constantPoolCount);
+            constantPool.flush();
+            out.write(constantPoolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(interfaceIndices.length);
+            for (int interfaceIndex : interfaceIndices) {
+                out.writeShort(interfaceIndex);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // No class attributes
+        });
+    }
+
+    private int addMemberReference(int tag, String ownerName, String name, String descriptor) {
+        int ownerIndex = addClass(ownerName);
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+        int nameAndTypeIndex = addConstant("nameAndType:" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return addConstant(tag + ":" + ownerName + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    private int addConstant(String key, int width, ByteWriter writer) {
+        Integer existingIndex = constantIndices.get(key);
+        if (existingIndex != null) {
+            return existingIndex;
+        }
+        try {
+            writer.write(constantPool);
+        } catch (IOException e) { // Strings whose encoding exceeds the class file limit
+            throw new CodeTooLargeException();
+        }
+        int index = constantPoolCount;
+        constantPoolCount += width;
+        if (constantPoolCount > 0xFFFF) {
+            throw new CodeTooLargeException();
+        }
+        constantIndices.put(key, index);
+        return index;
+    }
+
+    private byte[] writeMember(int accessFlags, String name, String descriptor, CodeBuilder code) {
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+        int codeIndex = code == null ? 0 : addUtf8("Code");
+        return write(out -> {
+            out.writeShort(accessFlags);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            if (code == null) {
+                out.writeShort(0);
+                return;
+            }
+            byte[] bytecode = code.toByteArray();
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(code.getMaxStack());
+            out.writeShort(code.getMaxLocals());
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // No exception table
+            out.writeShort(0); // No code attributes
+        });
+    }
+
+    private static byte[] write(ByteWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private interface ByteWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
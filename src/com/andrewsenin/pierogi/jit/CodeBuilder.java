@@ -0,0 +1,256 @@
+package com.andrewsenin.pierogi.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Emits the bytecode of one method, keeping track of the operand stack depth along the way
+public class CodeBuilder {
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD = 0x19;
+    private static final int AALOAD = 0x32;
+    private static final int ASTORE = 0x3A;
+    private static final int AASTORE = 0x53;
+    private static final int POP = 0x57;
+    private static final int DUP = 0x59;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9A;
+    private static final int GOTO = 0xA7;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int CHECKCAST = 0xC0;
+
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private final ClassFileWriter classFile;
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<>();
+    private final int maxLocals;
+    private int stackDepth = 0;
+    private int maxStack = 0;
+
+    public CodeBuilder(ClassFileWriter classFile, int maxLocals) {
+        this.classFile = classFile;
+        this.maxLocals = maxLocals;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytecode = code.toByteArray();
+        if (bytecode.length > MAX_CODE_LENGTH) {
+            throw new CodeTooLargeException();
+        }
+        for (Label label : labels) {
+            for (int jumpOffset : label.jumpOffsets) {
+                int distance = label.offset - jumpOffset;
+                if (distance != (short) distance) {
+                    throw new CodeTooLargeException();
+                }
+                bytecode[jumpOffset + 1] = (byte) (distance >> 8);
+                bytecode[jumpOffset + 2] = (byte) distance;
+            }
+        }
+        return bytecode;
+    }
+
+    public Label newLabel() {
+        Label label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    // Code after an unconditional jump is only reachable through a label, which carries the stack depth of its jumps
+    public void placeLabel(Label label) {
+        label.offset = code.size();
+        if (label.stackDepth >= 0) {
+            stackDepth = label.stackDepth;
+        }
+    }
+
+    public void pushNull() {
+        emit(ACONST_NULL, 1);
+    }
+
+    public void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value, 1);
+        } else if (value == (byte) value) {
+            emit(BIPUSH, 1);
+            code.write(value);
+        } else if (value == (short) value) {
+            emit(SIPUSH, 1);
+            writeShort(value);
+        } else {
+            emit(LDC_W, 1);
+            writeShort(classFile.addInteger(value));
+        }
+    }
+
+    public void pushDouble(double value) {
+        emit(LDC2_W, 2);
+        writeShort(classFile.addDouble(value));
+    }
+
+    public void pushString(String value) {
+        emit(LDC_W, 1);
+        writeShort(classFile.addString(value));
+    }
+
+    public void loadLocal(int index) {
+        emit(ALOAD, 1);
+        code.write(index);
+    }
+
+    public void storeLocal(int index) {
+        emit(ASTORE, -1);
+        code.write(index);
+    }
+
+    public void loadArrayElement() {
+        emit(AALOAD, -1);
+    }
+
+    public void storeArrayElement() {
+        emit(AASTORE, -3);
+    }
+
+    public void pop() {
+        emit(POP, -1);
+    }
+
+    public void duplicate() {
+        emit(DUP, 1);
+    }
+
+    public void newArray(String elementClassName) {
+        emit(ANEWARRAY, 0);
+        writeShort(classFile.addClass(elementClassName));
+    }
+
+    public void checkCast(String className) {
+        emit(CHECKCAST, 0);
+        writeShort(classFile.addClass(className));
+    }
+
+    public void getField(String ownerName, String name, String descriptor) {
+        emit(GETFIELD, measureStackSlots(descriptor) - 1);
+        writeShort(classFile.addFieldReference(ownerName, name, descriptor));
+    }
+
+    public void putField(String ownerName, String name, String descriptor) {
+        emit(PUTFIELD, -measureStackSlots(descriptor) - 1);
+        writeShort(classFile.addFieldReference(ownerName, name, descriptor));
+    }
+
+    public void invokeStatic(String ownerName, String name, String descriptor) {
+        emit(INVOKESTATIC, measureInvocationStackChange(descriptor));
+        writeShort(classFile.addMethodReference(ownerName, name, descriptor));
+    }
+
+    public void invokeVirtual(String ownerName, String name, String descriptor) {
+        emit(INVOKEVIRTUAL, measureInvocationStackChange(descriptor) - 1);
+        writeShort(classFile.addMethodReference(ownerName, name, descriptor));
+    }
+
+    public void invokeSpecial(String ownerName, String name, String descriptor) {
+        emit(INVOKESPECIAL, measureInvocationStackChange(descriptor) - 1);
+        writeShort(classFile.addMethodReference(ownerName, name, descriptor));
+    }
+
+    public void jumpIfFalse(Label label) {
+        jump(IFEQ, -1, label);
+    }
+
+    public void jumpIfTrue(Label label) {
+        jump(IFNE, -1, label);
+    }
+
+    public void jump(Label label) {
+        jump(GOTO, 0, label);
+    }
+
+    public void returnValue() {
+        emit(ARETURN, -1);
+    }
+
+    public void returnVoid() {
+        emit(RETURN, 0);
+    }
+
+    private void jump(int opCode, int stackChange, Label label) {
+        label.jumpOffsets.add(code.size());
+        emit(opCode, stackChange);
+        writeShort(0);
+        label.stackDepth = stackDepth;
+    }
+
+    private void emit(int opCode, int stackChange) {
+        code.write(opCode);
+        stackDepth += stackChange;
+        maxStack = Math.max(maxStack, stackDepth);
+    }
+
+    private void writeShort(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private static int measureInvocationStackChange(String descriptor) {
+        int parametersEnd = descriptor.indexOf(')');
+        return measureStackSlots(descriptor.substring(parametersEnd + 1)) - countParameterSlots(descriptor.substring(1, parametersEnd));
+    }
+
+    private static int countParameterSlots(String parameters) {
+        int slots = 0;
+        for (int i = 0; i < parameters.length(); i++) {
+            boolean isArray = false;
+            while (parameters.charAt(i) == '[') {
+                isArray = true;
+                i++;
+            }
+            char type = parameters.charAt(i);
+            if (type == 'L') {
+                i = parameters.indexOf(';', i);
+            }
+            slots += !isArray && (type == 'D' || type == 'J') ? 2 : 1;
+        }
+        return slots;
+    }
+
+    private static int measureStackSlots(String type) {
+        switch (type) {
+            case "V":
+                return 0;
+            case "D":
+            case "J":
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    public static class Label {
+        private final List<Integer> jumpOffsets = new ArrayList<>();
+        private int offset = -1;
+        private int stackDepth = -1;
+    }
+}
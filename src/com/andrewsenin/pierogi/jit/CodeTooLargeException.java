@@ -0,0 +1,7 @@
+package com.andrewsenin.pierogi.jit;
+
+// Thrown when a function body exceeds one of the class file format's limits and has to stay interpreted
+public class CodeTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,11 @@
+package com.andrewsenin.pierogi.jit;
+
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.io.IoManager;
+
+// The body of a FunctionExpression compiled to a JVM method. Like the interpreted body, it returns the value of its last
+// expression, or no value if it ends in a tail call it has deferred to the interpreter
+public interface CompiledBody {
+    NativeData execute(Frame frame, IoManager ioManager);
+}
@@ -0,0 +1,419 @@
+package com.andrewsenin.pierogi.jit;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.resolver.Resolver;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compiles the bodies of hot functions to JVM classes. Every expression becomes a call into JitRuntime, which HotSpot
+// can then inline into a single method per function body
+public class JitCompiler implements AstVisitor<Void> {
+
+    public static final int COMPILATION_THRESHOLD = 1000;
+
+    private static final String CLASS_NAME = "com/andrewsenin/pierogi/jit/CompiledFunctionBody";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String COMPILED_BODY = "com/andrewsenin/pierogi/jit/CompiledBody";
+    private static final String RUNTIME = "com/andrewsenin/pierogi/jit/JitRuntime";
+    private static final String FRAME = "com/andrewsenin/pierogi/interpreter/Frame";
+    private static final String NATIVE_DATA = "com/andrewsenin/pierogi/datatypes/NativeData";
+    private static final String NATIVE_FUNCTION = "com/andrewsenin/pierogi/datatypes/NativeFunction";
+    private static final String FUNCTION_EXPRESSION = "com/andrewsenin/pierogi/ast/FunctionExpression";
+    private static final String IO_MANAGER = "com/andrewsenin/pierogi/io/IoManager";
+
+    private static final String VALUE = "L" + NATIVE_DATA + ";";
+    private static final String VALUE_FACTORY = "(%s)" + VALUE;
+    private static final String CHECKED_OPERATION = "(%sL" + IO_MANAGER + ";Ljava/lang/String;I)%s";
+    private static final String CALL = "(L" + NATIVE_FUNCTION + ";[" + VALUE + "L" + IO_MANAGER + ";I)" + VALUE;
+
+    private static final int THIS_LOCAL = 0;
+    private static final int FRAME_LOCAL = 1;
+    private static final int IO_MANAGER_LOCAL = 2;
+
+    private final ClassFileWriter classFile = new ClassFileWriter(CLASS_NAME, OBJECT, COMPILED_BODY);
+    private final CodeBuilder code = new CodeBuilder(classFile, 3);
+    private final List<Object> constants = new ArrayList<>();
+
+    private JitCompiler() {
+    }
+
+    // Counts an invocation of the function and compiles its body once it gets hot. Returns null while the body
+    // should still be interpreted. Threads calling the same function may lose each other's counts, which only delays
+    // compilation, but the body is compiled once. A compiled body only has final fields, so it is safely published
+    public static CompiledBody lookUpCompiledBody(FunctionExpression functionExpression) {
+        CompiledBody compiledBody = functionExpression.getCompiledBody();
+        if (compiledBody != null) {
+            return compiledBody;
+        }
+        int invocationCount = functionExpression.getInvocationCount() + 1;
+        functionExpression.setInvocationCount(invocationCount);
+        if (invocationCount == COMPILATION_THRESHOLD) {
+            synchronized (functionExpression) {
+                compiledBody = functionExpression.getCompiledBody();
+                if (compiledBody == null) {
+                    compiledBody = compile(functionExpression);
+                    functionExpression.setCompiledBody(compiledBody);
+                }
+            }
+        }
+        return compiledBody;
+    }
+
+    // The function expression must already be resolved. Returns null if its body can't be compiled
+    public static CompiledBody compile(FunctionExpression functionExpression) {
+        if (functionExpression.getDefinition().isEmpty()) {
+            return null;
+        }
+        try {
+            return new JitCompiler().compileBody(functionExpression.getDefinition());
+        } catch (CodeTooLargeException | LinkageError | ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private CompiledBody compileBody(List<Expression> definition) throws ReflectiveOperationException {
+        compileExpressions(definition);
+        code.returnValue();
+        classFile.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, "constants", "[Ljava/lang/Object;");
+        classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", makeConstructor());
+        classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "execute", "(L" + FRAME + ";L" + IO_MANAGER + ";)" + VALUE, code);
+        Class<?> compiledClass = MethodHandles.lookup().defineHiddenClass(classFile.toByteArray(), true).lookupClass();
+        return (CompiledBody) compiledClass.getConstructor(Object[].class).newInstance((Object) constants.toArray());
+    }
+
+    private CodeBuilder makeConstructor() {
+        CodeBuilder constructor = new CodeBuilder(classFile, 2);
+        constructor.loadLocal(0);
+        constructor.invokeSpecial(OBJECT, "<init>", "()V");
+        constructor.loadLocal(0);
+        constructor.loadLocal(1);
+        constructor.putField(CLASS_NAME, "constants", "[Ljava/lang/Object;");
+        constructor.returnVoid();
+        return constructor;
+    }
+
+    @Override
+    public Void visit(NilExpression nilExpression) {
+        code.invokeStatic(RUNTIME, "makeNil", String.format(VALUE_FACTORY, ""));
+        return null;
+    }
+
+    @Override
+    public Void visit(TrueExpression trueExpression) {
+        code.pushInt(1);
+        code.invokeStatic(RUNTIME, "makeBool", String.format(VALUE_FACTORY, "Z"));
+        return null;
+    }
+
+    @Override
+    public Void visit(FalseExpression falseExpression) {
+        code.pushInt(0);
+        code.invokeStatic(RUNTIME, "makeBool", String.format(VALUE_FACTORY, "Z"));
+        return null;
+    }
+
+    @Override
+    public Void visit(NumberExpression numberExpression) {
+        code.pushDouble(numberExpression.getValue());
+        code.invokeStatic(RUNTIME, "makeNumber", String.format(VALUE_FACTORY, "D"));
+        return null;
+    }
+
+    @Override
+    public Void visit(StringExpression stringExpression) {
+        code.pushString(stringExpression.getValue());
+        code.invokeStatic(RUNTIME, "makeString", String.format(VALUE_FACTORY, "Ljava/lang/String;"));
+        return null;
+    }
+
+    @Override
+    public Void visit(ListExpression listExpression) {
+        compileArray(listExpression.getContents());
+        code.invokeStatic(RUNTIME, "makeList", String.format(VALUE_FACTORY, "[" + VALUE));
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression callExpression) {
+        compile(callExpression.getCallee());
+        code.pushInt(callExpression.getArguments().size());
+        pushErrorSite(callExpression);
+        code.invokeStatic(RUNTIME, "checkCallable", String.format(CHECKED_OPERATION, VALUE + "I", "L" + NATIVE_FUNCTION + ";"));
+        compileArray(callExpression.getArguments());
+        code.loadLocal(IO_MANAGER_LOCAL);
+        code.pushInt(callExpression.getLineNumber());
+        code.invokeStatic(RUNTIME, callExpression.getTailCall() ? "tailCall" : "call", CALL);
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentifierExpression identifierExpression) {
+        if (identifierExpression.getDepth() == Resolver.UNRESOLVED_DEPTH) {
+            code.loadLocal(IO_MANAGER_LOCAL);
+            code.pushString(identifierExpression.getSymbol());
+            code.pushInt(identifierExpression.getLineNumber());
+            code.invokeStatic(RUNTIME, "reportUndefined", "(L" + IO_MANAGER + ";Ljava/lang/String;I)" + VALUE);
+            return null;
+        }
+        if (identifierExpression.getDepth() == Resolver.BUILTIN_DEPTH) {
+            code.loadLocal(THIS_LOCAL);
+            code.getField(CLASS_NAME, "constants", "[Ljava/lang/Object;");
+            code.pushInt(addConstant(BuiltinsFrame.lookUpBuiltinAt(identifierExpression.getSlot())));
+            code.loadArrayElement();
+            code.checkCast(NATIVE_DATA);
+            return null;
+        }
+        code.loadLocal(FRAME_LOCAL);
+        code.pushInt(identifierExpression.getDepth());
+        code.invokeVirtual(FRAME, "getAncestor", "(I)L" + FRAME + ";");
+        code.pushInt(identifierExpression.getSlot());
+        code.invokeVirtual(FRAME, "lookUpValueAt", "(I)" + VALUE);
+        code.loadLocal(IO_MANAGER_LOCAL);
+        code.pushString(identifierExpression.getSymbol());
+        code.pushInt(identifierExpression.getLineNumber());
+        code.invokeStatic(RUNTIME, "checkDefined", String.format(CHECKED_OPERATION, VALUE, VALUE));
+        return null;
+    }
+
+    @Override
+    public Void visit(DefinitionExpression definitionExpression) {
+        code.loadLocal(FRAME_LOCAL);
+        code.pushInt(definitionExpression.getSlot());
+        compile(definitionExpression.getDefinition());
+        String define = definitionExpression.getDefinition() instanceof FunctionExpression ? "defineFunction" : "define";
+        code.invokeStatic(RUNTIME, define, "(L" + FRAME + ";I" + VALUE + ")" + VALUE);
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression ifExpression) {
+        CodeBuilder.Label alternative = code.newLabel();
+        CodeBuilder.Label end = code.newLabel();
+        compile(ifExpression.getCondition());
+        pushErrorSite(ifExpression);
+        code.invokeStatic(RUNTIME, "checkBool", String.format(CHECKED_OPERATION, VALUE, "Z"));
+        code.jumpIfFalse(alternative);
+        compileBlock(ifExpression.getConsequent(), ifExpression.getConsequentFrameSize());
+        code.jump(end);
+        code.placeLabel(alternative);
+        compileBlock(ifExpression.getAlternative(), ifExpression.getAlternativeFrameSize());
+        code.placeLabel(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        code.loadLocal(THIS_LOCAL);
+        code.getField(CLASS_NAME, "constants", "[Ljava/lang/Object;");
+        code.pushInt(addConstant(functionExpression));
+        code.loadArrayElement();
+        code.checkCast(FUNCTION_EXPRESSION);
+        code.loadLocal(FRAME_LOCAL);
+        code.invokeStatic(RUNTIME, "makeFunction", "(L" + FUNCTION_EXPRESSION + ";L" + FRAME + ";)" + VALUE);
+        return null;
+    }
+
+    @Override
+    public Void visit(GroupExpression groupExpression) {
+        compile(groupExpression.getInside());
+        return null;
+    }
+
+    @Override
+    public Void visit(NegationExpression negationExpression) {
+        compileCheckedUnary(negationExpression, "negate");
+        return null;
+    }
+
+    @Override
+    public Void visit(NotExpression notExpression) {
+        compileCheckedUnary(notExpression, "not");
+        return null;
+    }
+
+    @Override
+    public Void visit(AdditionExpression additionExpression) {
+        compileCheckedBinary(additionExpression, "add");
+        return null;
+    }
+
+    @Override
+    public Void visit(SubtractionExpression subtractionExpression) {
+        compileCheckedBinary(subtractionExpression, "subtract");
+        return null;
+    }
+
+    @Override
+    public Void visit(MultiplicationExpression multiplicationExpression) {
+        compileCheckedBinary(multiplicationExpression, "multiply");
+        return null;
+    }
+
+    @Override
+    public Void visit(DivisionExpression divisionExpression) {
+        compileCheckedBinary(divisionExpression, "divide");
+        return null;
+    }
+
+    @Override
+    public Void visit(ExponentExpression exponentExpression) {
+        compileCheckedBinary(exponentExpression, "exponentiate");
+        return null;
+    }
+
+    @Override
+    public Void visit(LessThanExpression lessThanExpression) {
+        compileCheckedBinary(lessThanExpression, "lessThan");
+        return null;
+    }
+
+    @Override
+    public Void visit(GreaterThanExpression greaterThanExpression) {
+        compileCheckedBinary(greaterThanExpression, "greaterThan");
+        return null;
+    }
+
+    @Override
+    public Void visit(LessEqualExpression lessEqualExpression) {
+        compileCheckedBinary(lessEqualExpression, "lessEqual");
+        return null;
+    }
+
+    @Override
+    public Void visit(GreaterEqualExpression greaterEqualExpression) {
+        compileCheckedBinary(greaterEqualExpression, "greaterEqual");
+        return null;
+    }
+
+    @Override
+    public Void visit(EqualsExpression equalsExpression) {
+        compile(equalsExpression.getLeft());
+        compile(equalsExpression.getRight());
+        code.invokeStatic(RUNTIME, "equals", String.format(VALUE_FACTORY, VALUE + VALUE));
+        return null;
+    }
+
+    @Override
+    public Void visit(NotEqualExpression notEqualExpression) {
+        compile(notEqualExpression.getLeft());
+        compile(notEqualExpression.getRight());
+        code.invokeStatic(RUNTIME, "notEqual", String.format(VALUE_FACTORY, VALUE + VALUE));
+        return null;
+    }
+
+    @Override
+    public Void visit(AndExpression andExpression) {
+        compileShortCircuit(andExpression, andExpression.getLeft(), andExpression.getRight(), false);
+        return null;
+    }
+
+    @Override
+    public Void visit(OrExpression orExpression) {
+        compileShortCircuit(orExpression, orExpression.getLeft(), orExpression.getRight(), true);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConcatenationExpression concatenationExpression) {
+        compileCheckedBinary(concatenationExpression, "concatenate");
+        return null;
+    }
+
+    @Override
+    public Void visit(ConsExpression consExpression) {
+        compileCheckedBinary(consExpression, "cons");
+        return null;
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    // Leaves only the value of the last expression on the stack, or null if there are no expressions
+    private void compileExpressions(List<Expression> expressions) {
+        if (expressions.isEmpty()) {
+            code.pushNull();
+            return;
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                code.pop();
+            }
+            compile(expressions.get(i));
+        }
+    }
+
+    private void compileBlock(List<Expression> block, int frameSize) {
+        code.loadLocal(FRAME_LOCAL);
+        code.pushInt(frameSize);
+        code.invokeStatic(RUNTIME, "pushFrame", "(L" + FRAME + ";I)L" + FRAME + ";");
+        code.storeLocal(FRAME_LOCAL);
+        compileExpressions(block);
+        code.loadLocal(FRAME_LOCAL);
+        code.invokeVirtual(FRAME, "getParent", "()L" + FRAME + ";");
+        code.storeLocal(FRAME_LOCAL);
+    }
+
+    private void compileArray(List<Expression> items) {
+        code.pushInt(items.size());
+        code.newArray(NATIVE_DATA);
+        for (int i = 0; i < items.size(); i++) {
+            code.duplicate();
+            code.pushInt(i);
+            compile(items.get(i));
+            code.storeArrayElement();
+        }
+    }
+
+    private <T extends Unary & Expression>
+    void compileCheckedUnary(T expression, String operation) {
+        compile(expression.getInside());
+        pushErrorSite(expression);
+        code.invokeStatic(RUNTIME, operation, String.format(CHECKED_OPERATION, VALUE, VALUE));
+    }
+
+    private <T extends Binary & Expression>
+    void compileCheckedBinary(T expression, String operation) {
+        compile(expression.getLeft());
+        compile(expression.getRight());
+        pushErrorSite(expression);
+        code.invokeStatic(RUNTIME, operation, String.format(CHECKED_OPERATION, VALUE + VALUE, VALUE));
+    }
+
+    // Both operands are checked to be bools, and the right one is only evaluated if the left one doesn't decide
+    private void compileShortCircuit(LineNumbered expression, Expression left, Expression right, boolean decidingValue) {
+        CodeBuilder.Label decided = code.newLabel();
+        CodeBuilder.Label end = code.newLabel();
+        compile(left);
+        pushErrorSite(expression);
+        code.invokeStatic(RUNTIME, "checkBool", String.format(CHECKED_OPERATION, VALUE, "Z"));
+        if (decidingValue) {
+            code.jumpIfTrue(decided);
+        } else {
+            code.jumpIfFalse(decided);
+        }
+        compile(right);
+        pushErrorSite(expression);
+        code.invokeStatic(RUNTIME, "checkBool", String.format(CHECKED_OPERATION, VALUE, "Z"));
+        code.invokeStatic(RUNTIME, "makeBool", String.format(VALUE_FACTORY, "Z"));
+        code.jump(end);
+        code.placeLabel(decided);
+        code.pushInt(decidingValue ? 1 : 0);
+        code.invokeStatic(RUNTIME, "makeBool", String.format(VALUE_FACTORY, "Z"));
+        code.placeLabel(end);
+    }
+
+    private void pushErrorSite(LineNumbered expression) {
+        code.loadLocal(IO_MANAGER_LOCAL);
+        code.pushString(expression.getClass().getSimpleName());
+        code.pushInt(expression.getLineNumber());
+    }
+
+    private int addConstant(Object constant) {
+        constants.add(constant);
+        return constants.size() - 1;
+    }
+}
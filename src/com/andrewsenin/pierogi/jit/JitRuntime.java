@@ -0,0 +1,188 @@
+package com.andrewsenin.pierogi.jit;
+
+import com.andrewsenin.pierogi.ast.FunctionExpression;
+import com.andrewsenin.pierogi.datatypes.*;
+import com.andrewsenin.pierogi.interpreter.CallStackIoManager;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.FunctionIoManagerWrapper;
+import com.andrewsenin.pierogi.io.IoManager;
+
+import java.util.Arrays;
+
+// Operations called from compiled function bodies. Each one behaves exactly like the matching visit method of the
+// Interpreter, including the errors it reports
+public class JitRuntime {
+
+    public static NativeData makeNil() {
+        return NativeNil.INSTANCE;
+    }
+
+    public static NativeData makeBool(boolean value) {
+        return NativeBool.of(value);
+    }
+
+    public static NativeData makeNumber(double value) {
+        return NativeNumber.of(value);
+    }
+
+    public static NativeData makeString(String value) {
+        return new NativeString(value);
+    }
+
+    public static NativeData makeList(NativeData[] items) {
+        return NativeList.of(Arrays.asList(items));
+    }
+
+    public static NativeData makeFunction(FunctionExpression functionExpression, Frame frame) {
+        Environment closure = new Environment(frame).makeClosure(functionExpression.getCaptureDepths(), functionExpression.getCaptureSlots());
+        return new UserFunction(functionExpression, closure);
+    }
+
+    public static NativeData define(Frame frame, int slot, NativeData value) {
+        frame.addBinding(slot, value);
+        return value;
+    }
+
+    public static NativeData defineFunction(Frame frame, int slot, NativeData function) {
+        frame.addBinding(slot, function);
+        ((UserFunction) function).bindToOwnSlot(slot);
+        return function;
+    }
+
+    public static Frame pushFrame(Frame frame, int size) {
+        return new Frame(frame, size);
+    }
+
+    public static NativeData checkDefined(NativeData value, IoManager ioManager, String symbol, int lineNumber) {
+        if (value == null) {
+            throw ioManager.reportRuntimeError(ErrorType.UNDEFINED_SYMBOL, symbol, lineNumber);
+        }
+        return value;
+    }
+
+    public static NativeData reportUndefined(IoManager ioManager, String symbol, int lineNumber) {
+        throw ioManager.reportRuntimeError(ErrorType.UNDEFINED_SYMBOL, symbol, lineNumber);
+    }
+
+    public static boolean checkBool(NativeData value, IoManager ioManager, String near, int lineNumber) {
+        if (!(value instanceof NativeBool)) {
+            throw ioManager.reportStaticError(ErrorType.INCOMPATIBLE_TYPES, near, lineNumber);
+        }
+        return ((NativeBool) value).getValue();
+    }
+
+    public static NativeData negate(NativeData inside, IoManager ioManager, String near, int lineNumber) {
+        if (!(inside instanceof NativeNumber)) {
+            throw ioManager.reportStaticError(ErrorType.INCOMPATIBLE_TYPES, near, lineNumber);
+        }
+        return NativeNumber.of(-((NativeNumber) inside).getValue());
+    }
+
+    public static NativeData not(NativeData inside, IoManager ioManager, String near, int lineNumber) {
+        return NativeBool.of(!checkBool(inside, ioManager, near, lineNumber));
+    }
+
+    public static NativeData add(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeNumber.of(((NativeNumber) left).getValue() + ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData subtract(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeNumber.of(((NativeNumber) left).getValue() - ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData multiply(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeNumber.of(((NativeNumber) left).getValue() * ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData divide(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        NativeNumber quotient = NativeNumber.of(((NativeNumber) left).getValue() / ((NativeNumber) right).getValue());
+        if (quotient.isInvalid()) {
+            throw ioManager.reportStaticError(ErrorType.DIVISION_BY_ZERO, near, lineNumber);
+        }
+        return quotient;
+    }
+
+    public static NativeData exponentiate(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeNumber.of(Math.pow(((NativeNumber) left).getValue(), ((NativeNumber) right).getValue()));
+    }
+
+    public static NativeData lessThan(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeBool.of(((NativeNumber) left).getValue() < ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData greaterThan(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeBool.of(((NativeNumber) left).getValue() > ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData lessEqual(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeBool.of(((NativeNumber) left).getValue() <= ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData greaterEqual(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        checkNumbers(left, right, ioManager, near, lineNumber);
+        return NativeBool.of(((NativeNumber) left).getValue() >= ((NativeNumber) right).getValue());
+    }
+
+    public static NativeData equals(NativeData left, NativeData right) {
+        return NativeBool.of(left.equals(right));
+    }
+
+    public static NativeData notEqual(NativeData left, NativeData right) {
+        return NativeBool.of(!left.equals(right));
+    }
+
+    public static NativeData concatenate(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        if (!(left instanceof NativeString && right instanceof NativeString)) {
+            throw ioManager.reportStaticError(ErrorType.INCOMPATIBLE_TYPES, near, lineNumber);
+        }
+        return ((NativeString) left).concatenate((NativeString) right);
+    }
+
+    public static NativeData cons(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        if (!(right instanceof NativeList)) {
+            throw ioManager.reportStaticError(ErrorType.INCOMPATIBLE_TYPES, near, lineNumber);
+        }
+        return ((NativeList) right).prepend(left);
+    }
+
+    public static NativeFunction checkCallable(NativeData callee, int argumentCount, IoManager ioManager, String near, int lineNumber) {
+        if (!(callee instanceof NativeFunction)) {
+            throw ioManager.reportStaticError(ErrorType.UNCALLABLE_VALUE, near, lineNumber);
+        }
+        NativeFunction function = (NativeFunction) callee;
+        if (argumentCount != function.getArity()) {
+            throw ioManager.reportRuntimeError(ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS, function.makeValueRepresentation(), lineNumber);
+        }
+        return function;
+    }
+
+    public static NativeData call(NativeFunction function, NativeData[] arguments, IoManager ioManager, int lineNumber) {
+        if (ioManager instanceof CallStackIoManager) {
+            return ((CallStackIoManager) ioManager).getInterpreter().callFunction(function, Arrays.asList(arguments), lineNumber);
+        }
+        return function.call(Arrays.asList(arguments), new FunctionIoManagerWrapper(ioManager, function.makeValueRepresentation(), lineNumber));
+    }
+
+    public static NativeData tailCall(NativeFunction function, NativeData[] arguments, IoManager ioManager, int lineNumber) {
+        if (function instanceof UserFunction && ioManager instanceof CallStackIoManager) {
+            return ((CallStackIoManager) ioManager).getInterpreter().deferTailCall((UserFunction) function, Arrays.asList(arguments));
+        }
+        return call(function, arguments, ioManager, lineNumber);
+    }
+
+    private static void checkNumbers(NativeData left, NativeData right, IoManager ioManager, String near, int lineNumber) {
+        if (!(left instanceof NativeNumber && right instanceof NativeNumber)) {
+            throw ioManager.reportStaticError(ErrorType.INCOMPATIBLE_TYPES, near, lineNumber);
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.andrewsenin.pierogi.lexer;
 import com.andrewsenin.pierogi.io.ErrorType;
 import com.andrewsenin.pierogi.io.IoManager;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 public class Lexer {
@@ -26,21 +24,38 @@ public class Lexer {
             '\\', '\\'
     );
 
-    private final String source;
+    private final CharSequence source;
     private final IoManager ioManager;
-    private final List<Token> tokens = new ArrayList<>();
+    private final TokenList tokens;
     private int lexemeStartIndex = 0;
     private int currentCharacterIndex = 0;
     private int lineNumber = 1;
 
-    public Lexer(String source, IoManager ioManager) {
+    public Lexer(CharSequence source, IoManager ioManager) {
         this.source = source;
         this.ioManager = ioManager;
+        this.tokens = new TokenList(source);
     }
 
-    public List<Token> lexSource() {
+    public TokenList lexSource() {
         while (!isAtEnd()) lexNextToken();
-        tokens.add(new Token(TokenType.EOF, "", null, lineNumber));
+        tokens.add(TokenType.EOF, source.length(), 0, lineNumber);
+        return tokens;
+    }
+
+    // Lexes only as far as the next token, which is EOF once the source runs out
+    public void lexMoreTokens() {
+        int tokenCount = tokens.size();
+        while (tokens.size() == tokenCount) {
+            if (isAtEnd()) {
+                tokens.add(TokenType.EOF, source.length(), 0, lineNumber);
+                return;
+            }
+            lexNextToken();
+        }
+    }
+
+    public TokenList getTokens() {
         return tokens;
     }
 
@@ -150,15 +165,11 @@ public class Lexer {
     }
 
     private String getCurrentLexeme() {
-        return source.substring(lexemeStartIndex, currentCharacterIndex);
+        return source.subSequence(lexemeStartIndex, currentCharacterIndex).toString();
     }
 
     private void addToken(TokenType tokenType) {
-        tokens.add(new Token(tokenType, getCurrentLexeme(), null, lineNumber));
-    }
-
-    private void addToken(TokenType tokenType, String lexeme, Object literalValue) {
-        tokens.add(new Token(tokenType, lexeme, literalValue, lineNumber));
+        tokens.add(tokenType, lexemeStartIndex, currentCharacterIndex - lexemeStartIndex, lineNumber);
     }
 
     private void consumeComment() {
@@ -167,26 +178,23 @@ public class Lexer {
 
     private void consumeString() {
         boolean nextCharacterIsEscaped = false;
-        StringBuilder stringBuilder = new StringBuilder();
         while (peekCurrentCharacter() != '"' || nextCharacterIsEscaped) {
             if (isAtEnd()) throw ioManager.reportStaticError(ErrorType.UNTERMINATED_STRING, getCurrentLexeme(), lineNumber);
             if (nextCharacterIsEscaped) {
                 if (ESCAPE_SEQUENCES.containsKey(peekCurrentCharacter())) {
-                    stringBuilder.append(ESCAPE_SEQUENCES.get(peekCurrentCharacter()));
                     nextCharacterIsEscaped = false;
                 } else {
                     throw ioManager.reportStaticError(ErrorType.UNKNOWN_ESCAPE_SEQUENCE, "\\" + peekCurrentCharacter(), lineNumber);
                 }
             } else if (peekCurrentCharacter() == '\\') {
                 nextCharacterIsEscaped = true;
-            } else {
-                if (peekCurrentCharacter() == '\n') lineNumber++;
-                stringBuilder.append(peekCurrentCharacter());
+            } else if (peekCurrentCharacter() == '\n') {
+                lineNumber++;
             }
             consumeCurrentCharacter();
         }
         consumeCurrentCharacter(); // Consume closing '"'
-        addToken(TokenType.STRING, getCurrentLexeme(), stringBuilder.toString());
+        addToken(TokenType.STRING);
     }
 
     private void consumeNumber() {
@@ -195,17 +203,47 @@ public class Lexer {
             consumeCurrentCharacter(); // Consume '.'
             while (Character.isDigit(peekCurrentCharacter())) consumeCurrentCharacter();
         }
-        String lexeme = getCurrentLexeme();
-        double value = Double.parseDouble(lexeme);
-        addToken(TokenType.NUMBER, lexeme, value);
+        addToken(TokenType.NUMBER);
     }
 
     private void consumeWord() {
         while (isValidIdentifierCharacter(peekCurrentCharacter())) consumeCurrentCharacter();
-        String lexeme = getCurrentLexeme();
-        if (KEYWORDS.containsKey(lexeme)) addToken(KEYWORDS.get(lexeme));
-        else
-            addToken(TokenType.IDENTIFIER, lexeme, null);
+        addToken(lookUpKeyword());
+    }
+
+    // Compares the word in place so that identifiers don't need their own strings
+    private TokenType lookUpKeyword() {
+        int length = currentCharacterIndex - lexemeStartIndex;
+        for (Map.Entry<String, TokenType> keyword : KEYWORDS.entrySet()) {
+            if (keyword.getKey().length() == length && matchesSource(keyword.getKey(), lexemeStartIndex)) {
+                return keyword.getValue();
+            }
+        }
+        return TokenType.IDENTIFIER;
+    }
+
+    private boolean matchesSource(String word, int startIndex) {
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(startIndex + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Expects the escape sequences in the range to have been checked while lexing
+    public static String decodeString(CharSequence source, int startIndex, int endIndex) {
+        StringBuilder stringBuilder = null;
+        for (int i = startIndex; i < endIndex; i++) {
+            char character = source.charAt(i);
+            if (character == '\\') {
+                if (stringBuilder == null) {
+                    stringBuilder = new StringBuilder(endIndex - startIndex).append(source, startIndex, i);
+                }
+                stringBuilder.append(ESCAPE_SEQUENCES.get(source.charAt(++i)));
+            } else if (stringBuilder != null) {
+                stringBuilder.append(character);
+            }
+        }
+        return stringBuilder == null ? source.subSequence(startIndex, endIndex).toString() : stringBuilder.toString();
     }
 
     private static boolean isValidIdentifierFirstCharacter(char c) {
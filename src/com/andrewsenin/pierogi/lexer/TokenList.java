@@ -0,0 +1,92 @@
+package com.andrewsenin.pierogi.lexer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+// The tokens of a source, kept as parallel arrays of offsets into it. Lexemes and literal values are only
+// materialized when asked for, and Token objects only when the list is read through the List interface
+public class TokenList extends AbstractList<Token> {
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CharSequence source;
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] startIndices = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lineNumbers = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public TokenList(CharSequence source) {
+        this.source = source;
+    }
+
+    public void add(TokenType type, int startIndex, int length, int lineNumber) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            startIndices = Arrays.copyOf(startIndices, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        }
+        types[size] = type.ordinal();
+        startIndices[size] = startIndex;
+        lengths[size] = length;
+        lineNumbers[size] = lineNumber;
+        size++;
+    }
+
+    // Drops the tokens before the index, moving the rest to the front of the list
+    public void discardBefore(int index) {
+        int remaining = size - index;
+        System.arraycopy(types, index, types, 0, remaining);
+        System.arraycopy(startIndices, index, startIndices, 0, remaining);
+        System.arraycopy(lengths, index, lengths, 0, remaining);
+        System.arraycopy(lineNumbers, index, lineNumbers, 0, remaining);
+        size = remaining;
+    }
+
+    public TokenType getType(int index) {
+        return TOKEN_TYPES[types[index]];
+    }
+
+    public int getLineNumber(int index) {
+        return lineNumbers[index];
+    }
+
+    public String getLexeme(int index) {
+        return source.subSequence(startIndices[index], startIndices[index] + lengths[index]).toString();
+    }
+
+    public double getNumberValue(int index) {
+        return Double.parseDouble(getLexeme(index));
+    }
+
+    public String getStringValue(int index) {
+        return Lexer.decodeString(source, startIndices[index] + 1, startIndices[index] + lengths[index] - 1);
+    }
+
+    public Object getLiteralValue(int index) {
+        switch (getType(index)) {
+            case NUMBER:
+                return getNumberValue(index);
+            case STRING:
+                return getStringValue(index);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return new Token(getType(index), getLexeme(index), getLiteralValue(index), getLineNumber(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,361 @@
+package com.andrewsenin.pierogi.optimizer;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.datatypes.*;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+
+// Evaluates the parts of expressions that only depend on literals, before they are resolved. Anything that would fail
+// at runtime is left as it is, so that it fails in the same way. Scopes are tracked like the resolver tracks them, so
+// that builtin constants are only folded where the program hasn't shadowed them
+public class ConstantFolder implements AstVisitor<Expression> {
+
+    private final List<Set<String>> scopes = new ArrayList<>(); // Innermost scope last
+
+    public ConstantFolder() {
+        scopes.add(new HashSet<>());
+    }
+
+    // Returns the expression itself if nothing in it could be folded
+    public Expression fold(Expression expression) {
+        return expression.accept(this);
+    }
+
+    @Override
+    public Expression visit(NilExpression nilExpression) {
+        return nilExpression;
+    }
+
+    @Override
+    public Expression visit(TrueExpression trueExpression) {
+        return trueExpression;
+    }
+
+    @Override
+    public Expression visit(FalseExpression falseExpression) {
+        return falseExpression;
+    }
+
+    @Override
+    public Expression visit(NumberExpression numberExpression) {
+        return numberExpression;
+    }
+
+    @Override
+    public Expression visit(StringExpression stringExpression) {
+        return stringExpression;
+    }
+
+    @Override
+    public Expression visit(ListExpression listExpression) {
+        List<Expression> contents = foldAll(listExpression.getContents());
+        return contents == listExpression.getContents()
+                ? listExpression
+                : new ListExpression(contents, listExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(CallExpression callExpression) {
+        Expression callee = fold(callExpression.getCallee());
+        List<Expression> arguments = foldAll(callExpression.getArguments());
+        return callee == callExpression.getCallee() && arguments == callExpression.getArguments()
+                ? callExpression
+                : new CallExpression(callee, arguments, callExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(IdentifierExpression identifierExpression) {
+        String symbol = identifierExpression.getSymbol();
+        int builtinSlot = BuiltinsFrame.lookUpSlotOf(symbol);
+        if (builtinSlot == BuiltinsFrame.NO_SLOT || isDeclared(symbol)) {
+            return identifierExpression;
+        }
+        Expression constant = toExpression(BuiltinsFrame.lookUpBuiltinAt(builtinSlot), identifierExpression.getLineNumber());
+        return constant == null ? identifierExpression : constant;
+    }
+
+    @Override
+    public Expression visit(DefinitionExpression definitionExpression) {
+        Expression definition = fold(definitionExpression.getDefinition());
+        scopes.get(scopes.size() - 1).add(definitionExpression.getSymbol()); // Uses before this still see outer values
+        return definition == definitionExpression.getDefinition()
+                ? definitionExpression
+                : new DefinitionExpression(definitionExpression.getSymbol(), definition, definitionExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(IfExpression ifExpression) {
+        Expression condition = fold(ifExpression.getCondition());
+        Set<String> consequentSymbols = new HashSet<>();
+        List<Expression> consequent = foldBlock(ifExpression.getConsequent(), consequentSymbols);
+        Set<String> alternativeSymbols = new HashSet<>();
+        List<Expression> alternative = foldBlock(ifExpression.getAlternative(), alternativeSymbols);
+        NativeData conditionValue = toConstant(condition);
+        if (conditionValue instanceof NativeBool) {
+            boolean isConsequent = ((NativeBool) conditionValue).getValue();
+            List<Expression> branch = isConsequent ? consequent : alternative;
+            // A branch is a block of its own, so only a lone expression that defines nothing can take the if's place
+            if (branch.size() == 1 && (isConsequent ? consequentSymbols : alternativeSymbols).isEmpty()) {
+                return branch.get(0);
+            }
+        }
+        return condition == ifExpression.getCondition() && consequent == ifExpression.getConsequent()
+                && alternative == ifExpression.getAlternative()
+                ? ifExpression
+                : new IfExpression(condition, consequent, alternative, ifExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(FunctionExpression functionExpression) {
+        scopes.add(new HashSet<>(functionExpression.getParameters()));
+        List<Expression> definition = foldAll(functionExpression.getDefinition());
+        scopes.remove(scopes.size() - 1);
+        return definition == functionExpression.getDefinition()
+                ? functionExpression
+                : new FunctionExpression(functionExpression.getParameters(), definition, functionExpression.getLineNumber());
+    }
+
+    // Groups only matter to the parser
+    @Override
+    public Expression visit(GroupExpression groupExpression) {
+        return fold(groupExpression.getInside());
+    }
+
+    @Override
+    public Expression visit(NegationExpression negationExpression) {
+        Expression inside = fold(negationExpression.getInside());
+        if (inside instanceof NumberExpression) {
+            return new NumberExpression(-((NumberExpression) inside).getValue(), negationExpression.getLineNumber());
+        }
+        return inside == negationExpression.getInside()
+                ? negationExpression
+                : new NegationExpression(inside, negationExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(NotExpression notExpression) {
+        Expression inside = fold(notExpression.getInside());
+        NativeData insideValue = toConstant(inside);
+        if (insideValue instanceof NativeBool) {
+            return toExpression(NativeBool.of(!((NativeBool) insideValue).getValue()), notExpression.getLineNumber());
+        }
+        return inside == notExpression.getInside()
+                ? notExpression
+                : new NotExpression(inside, notExpression.getLineNumber());
+    }
+
+    @Override
+    public Expression visit(AdditionExpression additionExpression) {
+        return foldArithmetic(additionExpression, Double::sum,
+                (left, right) -> new AdditionExpression(left, right, additionExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(SubtractionExpression subtractionExpression) {
+        return foldArithmetic(subtractionExpression, (left, right) -> left - right,
+                (left, right) -> new SubtractionExpression(left, right, subtractionExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(MultiplicationExpression multiplicationExpression) {
+        return foldArithmetic(multiplicationExpression, (left, right) -> left * right,
+                (left, right) -> new MultiplicationExpression(left, right, multiplicationExpression.getLineNumber()));
+    }
+
+    // Quotients that aren't finite are reported as division by zero, so they are left to the runtime
+    @Override
+    public Expression visit(DivisionExpression divisionExpression) {
+        return foldArithmetic(divisionExpression, (left, right) -> left / right,
+                (left, right) -> new DivisionExpression(left, right, divisionExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(ExponentExpression exponentExpression) {
+        return foldArithmetic(exponentExpression, Math::pow,
+                (left, right) -> new ExponentExpression(left, right, exponentExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(LessThanExpression lessThanExpression) {
+        return foldComparison(lessThanExpression, (left, right) -> left < right,
+                (left, right) -> new LessThanExpression(left, right, lessThanExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(GreaterThanExpression greaterThanExpression) {
+        return foldComparison(greaterThanExpression, (left, right) -> left > right,
+                (left, right) -> new GreaterThanExpression(left, right, greaterThanExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(LessEqualExpression lessEqualExpression) {
+        return foldComparison(lessEqualExpression, (left, right) -> left <= right,
+                (left, right) -> new LessEqualExpression(left, right, lessEqualExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(GreaterEqualExpression greaterEqualExpression) {
+        return foldComparison(greaterEqualExpression, (left, right) -> left >= right,
+                (left, right) -> new GreaterEqualExpression(left, right, greaterEqualExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(EqualsExpression equalsExpression) {
+        return foldConstants(equalsExpression, (left, right) -> NativeBool.of(left.equals(right)),
+                (left, right) -> new EqualsExpression(left, right, equalsExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(NotEqualExpression notEqualExpression) {
+        return foldConstants(notEqualExpression, (left, right) -> NativeBool.of(!left.equals(right)),
+                (left, right) -> new NotEqualExpression(left, right, notEqualExpression.getLineNumber()));
+    }
+
+    // The right operand is never evaluated after a false left one, so it needn't be constant
+    @Override
+    public Expression visit(AndExpression andExpression) {
+        Expression left = fold(andExpression.getLeft());
+        if (left instanceof FalseExpression) {
+            return left;
+        }
+        return foldConstants(andExpression, left, fold(andExpression.getRight()), ConstantFolder::foldLogic,
+                (newLeft, newRight) -> new AndExpression(newLeft, newRight, andExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(OrExpression orExpression) {
+        Expression left = fold(orExpression.getLeft());
+        if (left instanceof TrueExpression) {
+            return left;
+        }
+        return foldConstants(orExpression, left, fold(orExpression.getRight()), ConstantFolder::foldLogic,
+                (newLeft, newRight) -> new OrExpression(newLeft, newRight, orExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(ConcatenationExpression concatenationExpression) {
+        return foldConstants(concatenationExpression, (left, right) -> {
+            if (!(left instanceof NativeString && right instanceof NativeString)) {
+                return null;
+            }
+            return new NativeString(((NativeString) left).getValue() + ((NativeString) right).getValue());
+        }, (left, right) -> new ConcatenationExpression(left, right, concatenationExpression.getLineNumber()));
+    }
+
+    @Override
+    public Expression visit(ConsExpression consExpression) {
+        return foldConstants(consExpression, (left, right) -> null,
+                (left, right) -> new ConsExpression(left, right, consExpression.getLineNumber()));
+    }
+
+    private Expression foldArithmetic(Binary expression, DoubleBinaryOperator operator,
+                                      BinaryOperator<Expression> rebuild) {
+        return foldConstants(expression, (left, right) -> {
+            if (!(left instanceof NativeNumber && right instanceof NativeNumber)) {
+                return null;
+            }
+            double result = operator.applyAsDouble(((NativeNumber) left).getValue(), ((NativeNumber) right).getValue());
+            return expression instanceof DivisionExpression && NativeNumber.isInvalid(result) ? null : NativeNumber.of(result);
+        }, rebuild);
+    }
+
+    private Expression foldComparison(Binary expression, Comparison comparison, BinaryOperator<Expression> rebuild) {
+        return foldConstants(expression, (left, right) -> {
+            if (!(left instanceof NativeNumber && right instanceof NativeNumber)) {
+                return null;
+            }
+            return NativeBool.of(comparison.compare(((NativeNumber) left).getValue(), ((NativeNumber) right).getValue()));
+        }, rebuild);
+    }
+
+    private Expression foldConstants(Binary expression, BinaryOperator<NativeData> operator,
+                                     BinaryOperator<Expression> rebuild) {
+        return foldConstants(expression, fold(expression.getLeft()), fold(expression.getRight()), operator, rebuild);
+    }
+
+    // The operator returns null if applying it would be an error
+    private static Expression foldConstants(Binary expression, Expression left, Expression right,
+                                            BinaryOperator<NativeData> operator, BinaryOperator<Expression> rebuild) {
+        NativeData leftValue = toConstant(left);
+        NativeData rightValue = toConstant(right);
+        if (leftValue != null && rightValue != null) {
+            Expression result = toExpression(operator.apply(leftValue, rightValue), expression.getLineNumber());
+            if (result != null) {
+                return result;
+            }
+        }
+        return left == expression.getLeft() && right == expression.getRight()
+                ? (Expression) expression
+                : rebuild.apply(left, right);
+    }
+
+    private static NativeData foldLogic(NativeData left, NativeData right) {
+        return left instanceof NativeBool && right instanceof NativeBool ? right : null;
+    }
+
+    // The symbols the block defines are collected into its scope
+    private List<Expression> foldBlock(List<Expression> block, Set<String> scope) {
+        scopes.add(scope);
+        List<Expression> foldedBlock = foldAll(block);
+        scopes.remove(scopes.size() - 1);
+        return foldedBlock;
+    }
+
+    // Returns the same list if none of the expressions changed
+    private List<Expression> foldAll(List<Expression> expressions) {
+        List<Expression> foldedExpressions = null;
+        for (int i = 0; i < expressions.size(); i++) {
+            Expression folded = fold(expressions.get(i));
+            if (folded != expressions.get(i) && foldedExpressions == null) {
+                foldedExpressions = new ArrayList<>(expressions.subList(0, i));
+            }
+            if (foldedExpressions != null) {
+                foldedExpressions.add(folded);
+            }
+        }
+        return foldedExpressions == null ? expressions : foldedExpressions;
+    }
+
+    private boolean isDeclared(String symbol) {
+        return scopes.stream().anyMatch(scope -> scope.contains(symbol));
+    }
+
+    private static NativeData toConstant(Expression expression) {
+        if (expression instanceof NilExpression) {
+            return NativeNil.INSTANCE;
+        } else if (expression instanceof TrueExpression) {
+            return NativeBool.TRUE;
+        } else if (expression instanceof FalseExpression) {
+            return NativeBool.FALSE;
+        } else if (expression instanceof NumberExpression) {
+            return NativeNumber.of(((NumberExpression) expression).getValue());
+        } else if (expression instanceof StringExpression) {
+            return new NativeString(((StringExpression) expression).getValue());
+        }
+        return null;
+    }
+
+    // Returns null for values that no literal can stand for
+    private static Expression toExpression(NativeData value, int lineNumber) {
+        if (value instanceof NativeNil) {
+            return new NilExpression(lineNumber);
+        } else if (value instanceof NativeBool) {
+            return ((NativeBool) value).getValue() ? new TrueExpression(lineNumber) : new FalseExpression(lineNumber);
+        } else if (value instanceof NativeNumber) {
+            return new NumberExpression(((NativeNumber) value).getValue(), lineNumber);
+        } else if (value instanceof NativeString) {
+            return new StringExpression(((NativeString) value).getValue(), lineNumber);
+        }
+        return null;
+    }
+
+    private interface Comparison {
+        boolean compare(double left, double right);
+    }
+}
@@ -4,7 +4,8 @@ import com.andrewsenin.pierogi.ast.*;
 import com.andrewsenin.pierogi.io.ErrorType;
 import com.andrewsenin.pierogi.io.IoManager;
 import com.andrewsenin.pierogi.io.UnwindingException;
-import com.andrewsenin.pierogi.lexer.Token;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.lexer.TokenList;
 import com.andrewsenin.pierogi.lexer.TokenType;
 
 import java.util.ArrayList;
@@ -12,52 +13,75 @@ import java.util.List;
 
 public class Parser { // TODO: include line numbers on every expression
 
-    private final List<Token> tokens;
+    private final TokenList tokens;
+    private final Lexer lexer;
     private final IoManager ioManager;
     private final List<Expression> expressions = new ArrayList<>();
     private int currentTokenIndex = 0;
     private boolean hadError = false;
 
-    public Parser(List<Token> tokens, IoManager ioManager) {
+    public Parser(TokenList tokens, IoManager ioManager) {
         this.tokens = tokens;
+        this.lexer = null;
+        this.ioManager = ioManager;
+    }
+
+    // Pulls tokens from the lexer as they are needed and forgets them once their expression is parsed
+    public Parser(Lexer lexer, IoManager ioManager) {
+        this.tokens = lexer.getTokens();
+        this.lexer = lexer;
         this.ioManager = ioManager;
     }
 
     public List<Expression> parseTokens() {
-        while (!isAtEnd()) {
-            expressions.add(parseNextExpression());
+        while (hasMoreExpressions()) {
+            expressions.add(parseNextTopLevelExpression());
         }
         return expressions;
     }
 
+    public boolean hasMoreExpressions() {
+        return !isAtEnd();
+    }
+
+    public Expression parseNextTopLevelExpression() {
+        Expression expression = parseNextExpression();
+        if (lexer != null) {
+            tokens.discardBefore(currentTokenIndex);
+            currentTokenIndex = 0;
+        }
+        return expression;
+    }
+
     private boolean isAtEnd() {
-        return peekCurrentToken().getType() == TokenType.EOF;
+        return tokens.getType(peekCurrentToken()) == TokenType.EOF;
     }
 
-    private Token peekPreviousToken() {
-        return tokens.get(currentTokenIndex - 1);
+    private int peekPreviousToken() {
+        return currentTokenIndex - 1;
     }
 
-    private Token peekCurrentToken() {
-        return tokens.get(currentTokenIndex);
+    private int peekCurrentToken() {
+        while (lexer != null && currentTokenIndex >= tokens.size()) lexer.lexMoreTokens();
+        return currentTokenIndex;
     }
 
     private boolean matchesCurrentTokenType(TokenType tokenType) {
         if (isAtEnd()) return false;
-        return peekCurrentToken().getType() == tokenType;
+        return tokens.getType(peekCurrentToken()) == tokenType;
     }
 
-    private Token consumeCurrentToken() {
+    private int consumeCurrentToken() {
         if (!isAtEnd()) currentTokenIndex++;
         return peekPreviousToken();
     }
 
-    private UnwindingException reportError(ErrorType errorType, Token token) {
+    private UnwindingException reportError(ErrorType errorType, int token) {
         hadError = true;
-        return ioManager.reportStaticError(errorType, token.getLexeme(), token.getLineNumber());
+        return ioManager.reportStaticError(errorType, tokens.getLexeme(token), tokens.getLineNumber(token));
     }
 
-    private Token consumeCurrentIfMatchesElseError(TokenType tokenType, ErrorType errorType) {
+    private int consumeCurrentIfMatchesElseError(TokenType tokenType, ErrorType errorType) {
         if (matchesCurrentTokenType(tokenType)) return consumeCurrentToken();
         throw reportError(errorType, peekCurrentToken());
     }
@@ -79,7 +103,7 @@ public class Parser { // TODO: include line numbers on every expression
     }
 
     private Expression parseDefinition() {
-        Token possibleIdentifierToken = peekCurrentToken();
+        int possibleIdentifierToken = peekCurrentToken();
         Expression left = parseControl();
         if (consumeCurrentIfMatchesAny(TokenType.EQUAL)) {
             Expression value = parseDefinition();
@@ -93,7 +117,7 @@ public class Parser { // TODO: include line numbers on every expression
 
     private Expression parseControl() {
         if (consumeCurrentIfMatchesAny(TokenType.IF)) {
-            int lineNumber = peekPreviousToken().getLineNumber();
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression condition = parseNextExpression();
             List<Expression> consequent = parseBlock();
             consumeCurrentIfMatchesElseError(TokenType.ELSE, ErrorType.UNEXPECTED_TOKEN);
@@ -105,7 +129,7 @@ public class Parser { // TODO: include line numbers on every expression
             while (true) {
                 if (matchesCurrentTokenType(TokenType.LEFT_BRACE)) return new FunctionExpression(parameters, parseBlock());
                 consumeCurrentIfMatchesElseError(TokenType.IDENTIFIER, ErrorType.MISSING_IDENTIFIER);
-                parameters.add(peekPreviousToken().getLexeme());
+                parameters.add(tokens.getLexeme(peekPreviousToken()));
                 if (consumeCurrentIfMatchesAny(TokenType.COMMA)) continue;
                 if (matchesCurrentTokenType(TokenType.LEFT_BRACE)) return new FunctionExpression(parameters, parseBlock());
                 throw reportError(ErrorType.UNEXPECTED_TOKEN, peekCurrentToken());
@@ -117,8 +141,8 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseLogic() {
         Expression left = parseEquality();
         while (consumeCurrentIfMatchesAny(TokenType.AND, TokenType.OR)) {
-            TokenType tokenType = peekPreviousToken().getType();
-            int lineNumber = peekPreviousToken().getLineNumber();
+            TokenType tokenType = tokens.getType(peekPreviousToken());
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parseEquality();
             if (tokenType == TokenType.AND) left = new AndExpression(left, right, lineNumber);
             if (tokenType == TokenType.OR) left = new OrExpression(left, right, lineNumber);
@@ -129,8 +153,8 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseEquality() {
         Expression left = parseComparison();
         while (consumeCurrentIfMatchesAny(TokenType.EQUAL_EQUAL, TokenType.SLASH_EQUAL)) {
-            TokenType tokenType = peekPreviousToken().getType();
-            int lineNumber = peekPreviousToken().getLineNumber();
+            TokenType tokenType = tokens.getType(peekPreviousToken());
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parseComparison();
             if (tokenType == TokenType.EQUAL_EQUAL) left = new EqualsExpression(left, right, lineNumber);
             if (tokenType == TokenType.SLASH_EQUAL) left = new NotEqualExpression(left, right, lineNumber);
@@ -141,8 +165,8 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseComparison() {
         Expression left = parseConstruction();
         while (consumeCurrentIfMatchesAny(TokenType.LESS_THAN, TokenType.GREATER_THAN, TokenType.LESS_EQUAL, TokenType.GREATER_EQUAL)) {
-            TokenType tokenType = peekPreviousToken().getType();
-            int lineNumber = peekPreviousToken().getLineNumber();
+            TokenType tokenType = tokens.getType(peekPreviousToken());
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parseConstruction();
             if (tokenType == TokenType.LESS_THAN) left = new LessThanExpression(left, right, lineNumber);
             if (tokenType == TokenType.GREATER_THAN) left = new GreaterThanExpression(left, right, lineNumber);
@@ -155,7 +179,7 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseConstruction() {
         Expression left = parseConcatenation();
         while (consumeCurrentIfMatchesAny(TokenType.COLON)) {
-            int lineNumber = peekPreviousToken().getLineNumber();
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parseConstruction();
             left = new ConsExpression(left, right, lineNumber);
         }
@@ -165,7 +189,7 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseConcatenation() {
         Expression left = parseTerm();
         while (consumeCurrentIfMatchesAny(TokenType.DOT_DOT)) {
-            int lineNumber = peekCurrentToken().getLineNumber();
+            int lineNumber = tokens.getLineNumber(peekCurrentToken());
             Expression right = parseTerm();
             left = new ConcatenationExpression(left, right, lineNumber);
         }
@@ -175,8 +199,8 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseTerm() {
         Expression left = parseFactor();
         while (consumeCurrentIfMatchesAny(TokenType.PLUS, TokenType.MINUS)) {
-            TokenType tokenType = peekPreviousToken().getType();
-            int lineNumber = peekPreviousToken().getLineNumber();
+            TokenType tokenType = tokens.getType(peekPreviousToken());
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parseFactor();
             if (tokenType == TokenType.PLUS) left = new AdditionExpression(left, right, lineNumber);
             if (tokenType == TokenType.MINUS) left = new SubtractionExpression(left, right, lineNumber);
@@ -187,8 +211,8 @@ public class Parser { // TODO: include line numbers on every expression
     private Expression parseFactor() {
         Expression left = parsePower();
         while (consumeCurrentIfMatchesAny(TokenType.ASTERISK, TokenType.SLASH)) {
-            TokenType tokenType = peekPreviousToken().getType();
-            int lineNumber = peekPreviousToken().getLineNumber();
+            TokenType tokenType = tokens.getType(peekPreviousToken());
+            int lineNumber = tokens.getLineNumber(peekPreviousToken());
             Expression right = parsePower();
             if (tokenType == TokenType.ASTERISK) left = new MultiplicationExpression(left, right, lineNumber);
             if (tokenType == TokenType.SLASH) left = new DivisionExpression(left, right, lineNumber);
@@ -200,14 +224,14 @@ public class Parser { // TODO: include line numbers on every expression
         Expression base = parseUnary();
         while (consumeCurrentIfMatchesAny(TokenType.CARET)) {
             Expression power = parseUnary();
-            base = new ExponentExpression(base, power, peekPreviousToken().getLineNumber());
+            base = new ExponentExpression(base, power, tokens.getLineNumber(peekPreviousToken()));
         }
         return base;
     }
 
     private Expression parseUnary() {
-        if (consumeCurrentIfMatchesAny(TokenType.MINUS)) return new NegationExpression(parseUnary(), peekPreviousToken().getLineNumber());
-        if (consumeCurrentIfMatchesAny(TokenType.NOT)) return new NotExpression(parseUnary(), peekPreviousToken().getLineNumber());
+        if (consumeCurrentIfMatchesAny(TokenType.MINUS)) return new NegationExpression(parseUnary(), tokens.getLineNumber(peekPreviousToken()));
+        if (consumeCurrentIfMatchesAny(TokenType.NOT)) return new NotExpression(parseUnary(), tokens.getLineNumber(peekPreviousToken()));
         return parseCall();
     }
 
@@ -227,9 +251,9 @@ public class Parser { // TODO: include line numbers on every expression
         if (consumeCurrentIfMatchesAny(TokenType.NIL)) return new NilExpression();
         if (consumeCurrentIfMatchesAny(TokenType.TRUE)) return new TrueExpression();
         if (consumeCurrentIfMatchesAny(TokenType.FALSE)) return new FalseExpression();
-        if (consumeCurrentIfMatchesAny(TokenType.NUMBER)) return new NumberExpression((double) peekPreviousToken().getLiteralValue());
-        if (consumeCurrentIfMatchesAny(TokenType.STRING)) return new StringExpression((String) peekPreviousToken().getLiteralValue());
-        if (consumeCurrentIfMatchesAny(TokenType.IDENTIFIER)) return new IdentifierExpression(peekPreviousToken().getLexeme(), peekPreviousToken().getLineNumber());
+        if (consumeCurrentIfMatchesAny(TokenType.NUMBER)) return new NumberExpression(tokens.getNumberValue(peekPreviousToken()));
+        if (consumeCurrentIfMatchesAny(TokenType.STRING)) return new StringExpression(tokens.getStringValue(peekPreviousToken()));
+        if (consumeCurrentIfMatchesAny(TokenType.IDENTIFIER)) return new IdentifierExpression(tokens.getLexeme(peekPreviousToken()), tokens.getLineNumber(peekPreviousToken()));
         if (consumeCurrentIfMatchesAny(TokenType.LEFT_PARENTHESIS)) {
             Expression inside = parseNextExpression();
             consumeCurrentIfMatchesElseError(TokenType.RIGHT_PARENTHESIS, ErrorType.UNMATCHED_PARENTHESIS);
@@ -272,6 +296,6 @@ public class Parser { // TODO: include line numbers on every expression
             } while (consumeCurrentIfMatchesAny(TokenType.COMMA));
         }
         consumeCurrentIfMatchesElseError(TokenType.RIGHT_PARENTHESIS, ErrorType.UNMATCHED_PARENTHESIS);
-        return new CallExpression(callee, arguments, peekPreviousToken().getLineNumber());
+        return new CallExpression(callee, arguments, tokens.getLineNumber(peekPreviousToken()));
     }
 }
@@ -0,0 +1,34 @@
+package com.andrewsenin.pierogi.resolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FunctionScope extends Scope {
+
+    private final Map<String, Integer> captureIndices = new HashMap<>();
+    private final List<Integer> captureDepths = new ArrayList<>();
+    private final List<Integer> captureSlots = new ArrayList<>();
+
+    public Integer lookUpCaptureIndexOf(String symbol) {
+        return captureIndices.get(symbol);
+    }
+
+    // The depth and slot locate the captured value relative to where the function is created
+    public int capture(String symbol, int depth, int slot) {
+        int captureIndex = captureDepths.size();
+        captureIndices.put(symbol, captureIndex);
+        captureDepths.add(depth);
+        captureSlots.add(slot);
+        return captureIndex;
+    }
+
+    public int[] getCaptureDepths() {
+        return captureDepths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public int[] getCaptureSlots() {
+        return captureSlots.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,291 @@
+package com.andrewsenin.pierogi.resolver;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Resolver implements AstVisitor<Void> {
+
+    public static final int UNRESOLVED_DEPTH = -1;
+    // Builtins never change, so references to them are bound to the builtin's slot rather than to a frame
+    public static final int BUILTIN_DEPTH = -2;
+
+    private final List<Scope> scopes = new ArrayList<>(); // Innermost scope last
+    private final boolean declaresFreeSymbols;
+    private int callSiteCount = 0;
+
+    public Resolver() {
+        this(false);
+    }
+
+    // Free symbols can be declared as globals, so that their values can be supplied before the expressions are run
+    public Resolver(boolean declaresFreeSymbols) {
+        this.declaresFreeSymbols = declaresFreeSymbols;
+        scopes.add(new Scope());
+    }
+
+    // Returns the symbols of the global scope in the order of their slots
+    public List<String> getGlobalSymbols() {
+        return scopes.get(0).getSymbols();
+    }
+
+    public void resolve(List<Expression> expressions) {
+        expressions.forEach(this::resolve);
+    }
+
+    @Override
+    public Void visit(NilExpression nilExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(TrueExpression trueExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(FalseExpression falseExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(NumberExpression numberExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(StringExpression stringExpression) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ListExpression listExpression) {
+        resolve(listExpression.getContents());
+        return null;
+    }
+
+    @Override
+    public Void visit(CallExpression callExpression) {
+        callExpression.setCallSite(callSiteCount++); // Numbers call sites for the engines' call site caches
+        resolve(callExpression.getCallee());
+        resolve(callExpression.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentifierExpression identifierExpression) {
+        String symbol = identifierExpression.getSymbol();
+        int[] address = lookUpAddressOf(symbol, scopes.size());
+        int builtinSlot = BuiltinsFrame.lookUpSlotOf(symbol);
+        if (address == null && builtinSlot == BuiltinsFrame.NO_SLOT && declaresFreeSymbols) {
+            scopes.get(0).declare(symbol);
+            address = lookUpAddressOf(symbol, scopes.size());
+        }
+        if (address != null) {
+            identifierExpression.setDepth(address[0]);
+            identifierExpression.setSlot(address[1]);
+        } else if (builtinSlot != BuiltinsFrame.NO_SLOT) {
+            identifierExpression.setDepth(BUILTIN_DEPTH);
+            identifierExpression.setSlot(builtinSlot);
+        } else {
+            identifierExpression.setDepth(UNRESOLVED_DEPTH);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(DefinitionExpression definitionExpression) {
+        if (definitionExpression.getDefinition() instanceof FunctionExpression) { // So that the function can call itself
+            definitionExpression.setSlot(getInnermostScope().declare(definitionExpression.getSymbol()));
+            resolve(definitionExpression.getDefinition());
+            return null;
+        }
+        resolve(definitionExpression.getDefinition());
+        definitionExpression.setSlot(getInnermostScope().declare(definitionExpression.getSymbol()));
+        return null;
+    }
+
+    @Override
+    public Void visit(IfExpression ifExpression) {
+        resolve(ifExpression.getCondition());
+        ifExpression.setConsequentFrameSize(resolveBlock(ifExpression.getConsequent()));
+        ifExpression.setAlternativeFrameSize(resolveBlock(ifExpression.getAlternative()));
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionExpression functionExpression) {
+        FunctionScope scope = new FunctionScope();
+        functionExpression.getParameters().forEach(scope::declareNew); // Parameter i always lives in slot i
+        scopes.add(scope);
+        resolve(functionExpression.getDefinition());
+        scopes.remove(scopes.size() - 1);
+        markTailCalls(getLastExpressionOf(functionExpression.getDefinition()));
+        functionExpression.setFrameSize(scope.getSize());
+        functionExpression.setCaptureDepths(scope.getCaptureDepths());
+        functionExpression.setCaptureSlots(scope.getCaptureSlots());
+        return null;
+    }
+
+    @Override
+    public Void visit(GroupExpression groupExpression) {
+        return resolveUnary(groupExpression);
+    }
+
+    @Override
+    public Void visit(NegationExpression negationExpression) {
+        return resolveUnary(negationExpression);
+    }
+
+    @Override
+    public Void visit(NotExpression notExpression) {
+        return resolveUnary(notExpression);
+    }
+
+    @Override
+    public Void visit(AdditionExpression additionExpression) {
+        return resolveBinary(additionExpression);
+    }
+
+    @Override
+    public Void visit(SubtractionExpression subtractionExpression) {
+        return resolveBinary(subtractionExpression);
+    }
+
+    @Override
+    public Void visit(MultiplicationExpression multiplicationExpression) {
+        return resolveBinary(multiplicationExpression);
+    }
+
+    @Override
+    public Void visit(DivisionExpression divisionExpression) {
+        return resolveBinary(divisionExpression);
+    }
+
+    @Override
+    public Void visit(ExponentExpression exponentExpression) {
+        return resolveBinary(exponentExpression);
+    }
+
+    @Override
+    public Void visit(LessThanExpression lessThanExpression) {
+        return resolveBinary(lessThanExpression);
+    }
+
+    @Override
+    public Void visit(GreaterThanExpression greaterThanExpression) {
+        return resolveBinary(greaterThanExpression);
+    }
+
+    @Override
+    public Void visit(LessEqualExpression lessEqualExpression) {
+        return resolveBinary(lessEqualExpression);
+    }
+
+    @Override
+    public Void visit(GreaterEqualExpression greaterEqualExpression) {
+        return resolveBinary(greaterEqualExpression);
+    }
+
+    @Override
+    public Void visit(EqualsExpression equalsExpression) {
+        return resolveBinary(equalsExpression);
+    }
+
+    @Override
+    public Void visit(NotEqualExpression notEqualExpression) {
+        return resolveBinary(notEqualExpression);
+    }
+
+    @Override
+    public Void visit(AndExpression andExpression) {
+        return resolveBinary(andExpression);
+    }
+
+    @Override
+    public Void visit(OrExpression orExpression) {
+        return resolveBinary(orExpression);
+    }
+
+    @Override
+    public Void visit(ConcatenationExpression concatenationExpression) {
+        return resolveBinary(concatenationExpression);
+    }
+
+    @Override
+    public Void visit(ConsExpression consExpression) {
+        return resolveBinary(consExpression);
+    }
+
+    public void resolve(Expression expression) {
+        expression.accept(this);
+    }
+
+    private Scope getInnermostScope() {
+        return scopes.get(scopes.size() - 1);
+    }
+
+    // Marks the calls whose value is the value of the expression. Does nothing for a null expression
+    private void markTailCalls(Expression expression) {
+        if (expression instanceof CallExpression) {
+            ((CallExpression) expression).setTailCall(true);
+        } else if (expression instanceof GroupExpression) {
+            markTailCalls(((GroupExpression) expression).getInside());
+        } else if (expression instanceof IfExpression) {
+            markTailCalls(getLastExpressionOf(((IfExpression) expression).getConsequent()));
+            markTailCalls(getLastExpressionOf(((IfExpression) expression).getAlternative()));
+        }
+    }
+
+    // Null for an empty block. The parser never makes one, but an AST read from elsewhere might have one
+    private static Expression getLastExpressionOf(List<Expression> block) {
+        return block.isEmpty() ? null : block.get(block.size() - 1);
+    }
+
+    // Searches scopes below the given end index and returns {depth, slot}, or null if no user scope defines the symbol.
+    // A function's frames are only ever followed by its capture frame, so free variables become captures on the way out.
+    private int[] lookUpAddressOf(String symbol, int end) {
+        int depth = 0;
+        for (int i = end - 1; i >= 0; i--, depth++) {
+            Scope scope = scopes.get(i);
+            Integer slot = scope.lookUpSlotOf(symbol);
+            if (slot != null) {
+                return new int[]{depth, slot};
+            }
+            if (scope instanceof FunctionScope) {
+                FunctionScope functionScope = (FunctionScope) scope;
+                Integer captureIndex = functionScope.lookUpCaptureIndexOf(symbol);
+                if (captureIndex == null) {
+                    int[] outerAddress = lookUpAddressOf(symbol, i);
+                    if (outerAddress == null) {
+                        return null;
+                    }
+                    captureIndex = functionScope.capture(symbol, outerAddress[0], outerAddress[1]);
+                }
+                return new int[]{depth + 1, captureIndex};
+            }
+        }
+        return null;
+    }
+
+    private Void resolveUnary(Unary expression) {
+        resolve(expression.getInside());
+        return null;
+    }
+
+    private Void resolveBinary(Binary expression) {
+        resolve(expression.getLeft());
+        resolve(expression.getRight());
+        return null;
+    }
+
+    private int resolveBlock(List<Expression> block) {
+        Scope scope = new Scope();
+        scopes.add(scope);
+        resolve(block);
+        scopes.remove(scopes.size() - 1);
+        return scope.getSize();
+    }
+}
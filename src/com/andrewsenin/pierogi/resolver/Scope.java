@@ -0,0 +1,40 @@
+package com.andrewsenin.pierogi.resolver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Scope {
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int size = 0;
+
+    public Integer lookUpSlotOf(String symbol) {
+        return slots.get(symbol);
+    }
+
+    public int declare(String symbol) {
+        Integer existingSlot = slots.get(symbol);
+        if (existingSlot != null) {
+            return existingSlot;
+        }
+        return declareNew(symbol);
+    }
+
+    public int declareNew(String symbol) {
+        int slot = size++;
+        slots.put(symbol, slot);
+        return slot;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public List<String> getSymbols() {
+        String[] symbols = new String[size];
+        slots.forEach((symbol, slot) -> symbols[slot] = symbol);
+        return Arrays.asList(symbols);
+    }
+}
@@ -0,0 +1,113 @@
+package com.andrewsenin.pierogi.cache;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.interpreter.Interpreter;
+import com.andrewsenin.pierogi.io.DummyIoManager;
+import com.andrewsenin.pierogi.io.MappedSource;
+import com.andrewsenin.pierogi.io.TestIoManager;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.resolver.Resolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AstCacheTest {
+
+    private static final String SOURCE = "x = 1\nf = \\a, b { y = [nil, true, \"s\\n\" .. \"t\"]\n"
+            + " if a > b and not (a == 2) { \\z { z + x + y } } else { f(a - 1, b) } }\n"
+            + "count = \\self, n { if n <= 0 { 0 } else { self(self, n - 1) } }\nprintln(count(count, 3) : [-x ^ 2, 7 / 2])";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void round_trip_expressions_with_resolver_annotations() {
+        AstCache astCache = new AstCache(directory);
+        String key = astCache.computeKey(SOURCE);
+        List<Expression> expressions = resolveSource(SOURCE);
+        AstCache.Entry entry = astCache.startEntry(key);
+        expressions.forEach(entry::add);
+        entry.commit();
+        List<Expression> loadedExpressions = new ArrayList<>();
+        astCache.load(key).forEachRemaining(loadedExpressions::add);
+        assertEquals(expressions, loadedExpressions);
+        FunctionExpression function = (FunctionExpression) ((DefinitionExpression) expressions.get(2)).getDefinition();
+        FunctionExpression loadedFunction = (FunctionExpression) ((DefinitionExpression) loadedExpressions.get(2)).getDefinition();
+        assertEquals(function.getFrameSize(), loadedFunction.getFrameSize());
+        IfExpression body = (IfExpression) loadedFunction.getDefinition().get(0);
+        assertTrue(((CallExpression) body.getAlternative().get(0)).getTailCall());
+        assertEquals(((CallExpression) ((IfExpression) function.getDefinition().get(0)).getAlternative().get(0)).getCallSite(),
+                ((CallExpression) body.getAlternative().get(0)).getCallSite());
+        assertEquals(((DefinitionExpression) expressions.get(2)).getSlot(), ((DefinitionExpression) loadedExpressions.get(2)).getSlot());
+    }
+
+    @Test
+    void run_loaded_expressions_like_parsed_ones() {
+        AstCache astCache = new AstCache(directory);
+        String key = astCache.computeKey(SOURCE);
+        AstCache.Entry entry = astCache.startEntry(key);
+        resolveSource(SOURCE).forEach(entry::add);
+        entry.commit();
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).executeResolved(astCache.load(key));
+        assertEquals("[0, 1, 3.5]\n", ioManager.getOutput());
+    }
+
+    @Test
+    void miss_on_changed_source_and_unfinished_entries() throws MalformedInputException {
+        AstCache astCache = new AstCache(directory);
+        assertNotEquals(astCache.computeKey(SOURCE), astCache.computeKey(SOURCE + " "));
+        assertEquals(astCache.computeKey(SOURCE), astCache.computeKey(new MappedSource(ByteBuffer.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)))));
+        String key = astCache.computeKey(SOURCE);
+        AstCache.Entry entry = astCache.startEntry(key);
+        resolveSource(SOURCE).forEach(entry::add);
+        entry.abandon();
+        assertNull(astCache.load(key));
+    }
+
+    @Test
+    void drop_corrupt_entries_before_reading_any_expression() throws IOException {
+        AstCache astCache = new AstCache(directory);
+        String key = astCache.computeKey(SOURCE);
+        Path path = directory.resolve(key + ".ast");
+        writeEntry(astCache, key);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(astCache.load(key));
+        assertFalse(Files.exists(path));
+        writeEntry(astCache, key);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        assertNull(astCache.load(key));
+        assertFalse(Files.exists(path));
+    }
+
+    private static void writeEntry(AstCache astCache, String key) {
+        AstCache.Entry entry = astCache.startEntry(key);
+        resolveSource(SOURCE).forEach(entry::add);
+        entry.commit();
+    }
+
+    private static List<Expression> resolveSource(String source) {
+        DummyIoManager ioManager = new DummyIoManager();
+        List<Expression> expressions = new Parser(new Lexer(source, ioManager).lexSource(), ioManager).parseTokens();
+        new Resolver().resolve(expressions);
+        return expressions;
+    }
+}
@@ -0,0 +1,168 @@
+package com.andrewsenin.pierogi.compiler;
+
+import com.andrewsenin.pierogi.ExecutionEngine;
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+import com.andrewsenin.pierogi.datatypes.NativeNumber;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.interpreter.Interpreter;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.TestIoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VirtualMachineTest {
+
+    @Test
+    void evaluate_arithmetic_and_logic_like_interpreter() {
+        assertSameAsInterpreter("1 + 2 * 3 ^ 2 - 4 / 8\n-(2 - 5) /= 3\n1 <= 1 and 2 >= 3 or not false\n\"a\" .. \"b\"\n1 : [2, 3]\n[]");
+    }
+
+    @Test
+    void evaluate_blocks_and_closures_like_interpreter() {
+        assertSameAsInterpreter("a = 1\nf = \\x { if x > 0 { b = x\n \\y { a + b + y } } else { \\y { y } } }\n"
+                + "g = f(2)\na = 100\ng(3)\nf(0)(5)\nmap(\\x { x * a }, [1, 2, 3])");
+    }
+
+    @Test
+    void reach_through_blocks_without_frames_like_interpreter() {
+        assertSameAsInterpreter("f = \\x { if x > 0 { if x > 1 { c = x * 2\n if true { \\y { x + c + y } } else { nil } } else { nil } } else { nil } }\n"
+                + "f(2)(3)\ng = \\n, acc { if n == 0 { acc } else { if true { g(n - 1, acc + n) } else { nil } } }\ng(10, 0)");
+    }
+
+    @Test
+    void compare_and_combine_with_number_constants_like_interpreter() {
+        assertSameAsInterpreter("x = 5\n[x + 1, x - 1, x * 2, x < 5, x > 5, x <= 5, x >= 5, x == 5, x /= 5, \"s\" == 1, nil /= 1]");
+        assertSameErrorAsInterpreter("x = \"s\"\n\nx < 1", ErrorType.INCOMPATIBLE_TYPES);
+    }
+
+    @Test
+    void call_functions_by_their_own_names_like_interpreter() {
+        assertSameAsInterpreter("fact = \\n { if n == 0 { 1 } else { n * fact(n - 1) } }\nfact(5)\n"
+                + "g = \\x { h = \\n { if n == 0 { 0 } else { n + h(n - 1) } }\nh(x) }\ng(4)\nf = 1\nf = \\ { f }\nf()");
+    }
+
+    @Test
+    void run_deep_tail_calls_in_constant_stack() {
+        assertSameAsInterpreter("loop = \\self, n { if n == 0 { \"done\" } else { self(self, n - 1) } }\nloop(loop, 100000)");
+    }
+
+    @Test
+    void report_type_errors_at_the_same_site_as_interpreter() {
+        assertSameErrorAsInterpreter("f = \\x { x + 1 }\n\nf(\"one\")", ErrorType.INCOMPATIBLE_TYPES);
+        assertSameErrorAsInterpreter("1 / 0", ErrorType.DIVISION_BY_ZERO);
+        assertSameErrorAsInterpreter("x = 1\nx(2)", ErrorType.UNCALLABLE_VALUE);
+        assertSameErrorAsInterpreter("if 1 { 2 } else { 3 }", ErrorType.INCOMPATIBLE_TYPES);
+    }
+
+    @Test
+    void report_errors_inside_map_and_filter_where_they_are_called() {
+        assertSameErrorAsInterpreter("xs = map(\\x { x / 0 }, [1])\nprintln(\"after\")", ErrorType.DIVISION_BY_ZERO);
+        assertSameErrorAsInterpreter("\nys = filter(\\x { x + \"s\" }, iota(3))\nprintln(\"after\")", ErrorType.INCOMPATIBLE_TYPES);
+        assertSameErrorAsInterpreter("f = \\x { 1 + (\\y { y / 0 })(x) }\nh = \\xs { 1 : pmap(f, xs) }\n1 : h([1])", ErrorType.DIVISION_BY_ZERO);
+    }
+
+    @Test
+    void run_functions_called_back_by_builtins_on_top_of_the_caller() {
+        assertSameAsInterpreter("deep = \\n { if n == 0 { 0 } else { 1 + deep(n - 1) } }\n"
+                + "map(\\xs { map(\\x { deep(x) + first(xs) }, xs) }, [[100, 200], [300]])");
+        assertSameErrorAsInterpreter("g = \\y { y / 0 }\nf = \\x { map(\\y { g(y) }, [x]) }\n\n1 : f(1)", ErrorType.DIVISION_BY_ZERO);
+        VirtualMachine virtualMachine = makeVirtualMachine(new TestIoManager());
+        interpretExpectingError(virtualMachine, "map(\\x { x / 0 }, [1])");
+        assertEquals("[2, 3]", virtualMachine.interpret("map(\\x { x + 1 }, [1, 2])").get(0).makeValueRepresentation());
+    }
+
+    @Test
+    void check_a_call_site_again_only_when_it_gets_a_new_function() {
+        VirtualMachine virtualMachine = makeVirtualMachine(new TestIoManager());
+        CompiledFunction sum = (CompiledFunction) virtualMachine.interpret(
+                "sum = \\f, n, acc { if n == 0 { acc } else { sum(f, n - 1, acc + f(n)) } }").get(0);
+        ArityCountingFunction identity = new ArityCountingFunction();
+        assertEquals("5050", virtualMachine.call(sum, Arrays.asList(identity, NativeNumber.of(100), NativeNumber.of(0))).makeValueRepresentation());
+        assertEquals(1, identity.arityCheckCount);
+        virtualMachine.call(sum, Arrays.asList(new ArityCountingFunction(), NativeNumber.of(1), NativeNumber.of(0)));
+        virtualMachine.call(sum, Arrays.asList(identity, NativeNumber.of(1), NativeNumber.of(0)));
+        assertEquals(2, identity.arityCheckCount);
+        assertSameErrorAsInterpreter("call = \\f { f(2) }\ncall(\\x { x })\ncall(\\x, y { x })", ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS);
+        assertSameErrorAsInterpreter("call = \\f { f(2) }\ncall(\\x { x })\ncall(2)", ErrorType.UNCALLABLE_VALUE);
+    }
+
+    private static class ArityCountingFunction extends NativeFunction {
+
+        private int arityCheckCount = 0;
+
+        @Override
+        public NativeData call(List<NativeData> arguments, IoManager ioManager) {
+            return arguments.get(0);
+        }
+
+        @Override
+        public int getArity() {
+            arityCheckCount++;
+            return 1;
+        }
+
+        @Override
+        public String makeValueRepresentation() {
+            return "<counting function>";
+        }
+
+        @Override
+        public String makePrintRepresentation() {
+            return makeValueRepresentation();
+        }
+    }
+
+    private static void assertSameAsInterpreter(String source) {
+        TestIoManager interpreterIoManager = new TestIoManager();
+        TestIoManager virtualMachineIoManager = new TestIoManager();
+        assertEquals(
+                makeRepresentations(makeInterpreter(interpreterIoManager).interpret(source)),
+                makeRepresentations(makeVirtualMachine(virtualMachineIoManager).interpret(source))
+        );
+        assertEquals(interpreterIoManager.getOutput(), virtualMachineIoManager.getOutput());
+    }
+
+    private static void assertSameErrorAsInterpreter(String source, ErrorType errorType) {
+        TestIoManager interpreterIoManager = new TestIoManager();
+        TestIoManager virtualMachineIoManager = new TestIoManager();
+        interpretExpectingError(makeInterpreter(interpreterIoManager), source);
+        interpretExpectingError(makeVirtualMachine(virtualMachineIoManager), source);
+        assertEquals(errorType, virtualMachineIoManager.getMostRecentErrorType());
+        assertEquals(interpreterIoManager.getMostRecentErrorType(), virtualMachineIoManager.getMostRecentErrorType());
+        assertEquals(interpreterIoManager.getMostRecentErrorLexeme(), virtualMachineIoManager.getMostRecentErrorLexeme());
+        assertEquals(interpreterIoManager.getMostRecentErrorLineNumber(), virtualMachineIoManager.getMostRecentErrorLineNumber());
+        assertEquals(interpreterIoManager.getMostRecentErrorTrace(), virtualMachineIoManager.getMostRecentErrorTrace());
+        assertEquals(interpreterIoManager.getOutput(), virtualMachineIoManager.getOutput());
+    }
+
+    private static void interpretExpectingError(ExecutionEngine executionEngine, String source) {
+        try {
+            executionEngine.interpret(source);
+        } catch (UnwindingException ignored) {
+        }
+    }
+
+    private static List<String> makeRepresentations(List<NativeData> values) {
+        List<String> representations = new ArrayList<>();
+        values.forEach(value -> representations.add(value.makeValueRepresentation()));
+        return representations;
+    }
+
+    private static ExecutionEngine makeInterpreter(TestIoManager ioManager) {
+        return new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+    }
+
+    private static VirtualMachine makeVirtualMachine(TestIoManager ioManager) {
+        return new VirtualMachine(ioManager, new Frame(BuiltinsFrame.INSTANCE));
+    }
+}
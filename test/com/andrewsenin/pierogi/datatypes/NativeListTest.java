@@ -0,0 +1,47 @@
+package com.andrewsenin.pierogi.datatypes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NativeListTest {
+
+    @Test
+    void prepend_shares_the_original_list() {
+        NativeList list = NativeList.of(Arrays.asList(NativeNumber.of(2), NativeNumber.of(3)));
+        NativeList consed = list.prepend(NativeNumber.of(1));
+        assertSame(list, consed.getRest());
+        assertEquals(3, consed.getSize());
+        assertEquals("[1, 2, 3]", consed.makeValueRepresentation());
+        assertEquals("[2, 3]", list.makeValueRepresentation());
+    }
+
+    @Test
+    void lists_with_equal_items_are_equal() {
+        NativeList list = NativeList.of(Arrays.asList(new NativeString("a"), NativeList.empty()));
+        NativeList other = NativeList.empty().prepend(NativeList.empty()).prepend(new NativeString("a"));
+        assertTrue(list.equals((NativeData) other));
+        assertFalse(list.equals((NativeData) other.getRest()));
+        assertFalse(list.equals((NativeData) NativeList.of(Arrays.asList(new NativeString("a"), NativeNil.INSTANCE))));
+    }
+
+    @Test
+    void ranges_equal_lists_of_the_same_numbers() {
+        NativeList range = new RangeList(1, 4);
+        assertEquals(3, range.getSize());
+        assertEquals("[2, 3]", range.getRest().makeValueRepresentation());
+        assertTrue(range.equals((NativeData) NativeList.of(Arrays.asList(NativeNumber.of(1), NativeNumber.of(2), NativeNumber.of(3)))));
+        assertTrue(range.prepend(NativeNumber.of(0)).equals((NativeData) new RangeList(0, 4)));
+        assertTrue(new RangeList(5, 2).isEmpty());
+    }
+
+    @Test
+    void empty_list_has_no_first_item() {
+        assertTrue(NativeList.empty().isEmpty());
+        assertEquals("[]", NativeList.empty().makeValueRepresentation());
+        assertThrows(NoSuchElementException.class, () -> NativeList.empty().getFirst());
+    }
+}
@@ -0,0 +1,26 @@
+package com.andrewsenin.pierogi.datatypes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NativeNumberTest {
+
+    @Test
+    void share_small_integers() {
+        assertSame(NativeNumber.of(-128), NativeNumber.of(-128.0));
+        assertSame(NativeNumber.of(1023), NativeNumber.of(1000 + 23));
+        assertNotSame(NativeNumber.of(1024), NativeNumber.of(1024));
+        assertNotSame(NativeNumber.of(0.5), NativeNumber.of(0.5));
+    }
+
+    @Test
+    void keep_negative_zero_distinct_from_zero() {
+        assertEquals("-0", NativeNumber.of(-0.0).makeValueRepresentation());
+        assertEquals("0", NativeNumber.of(0).makeValueRepresentation());
+        assertTrue(NativeNumber.of(-0.0).equals(NativeNumber.of(0)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.andrewsenin.pierogi.datatypes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NativeStringTest {
+
+    @Test
+    void flatten_deep_ropes_in_order() {
+        NativeString string = new NativeString("");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            string = string.concatenate(new NativeString(i + ","));
+            expected.append(i).append(",");
+        }
+        assertEquals(expected.length(), string.getLength());
+        assertEquals(expected.toString(), string.getValue());
+        assertEquals(expected.toString(), string.makePrintRepresentation());
+    }
+
+    @Test
+    void ropes_equal_flat_strings_with_the_same_characters() {
+        String piece = "x".repeat(300);
+        NativeString rope = new NativeString(piece).concatenate(new NativeString(piece));
+        assertTrue(rope.equals((NativeData) new NativeString(piece + piece)));
+        assertFalse(rope.equals((NativeData) new NativeString(piece + piece + "y")));
+        assertSame(rope, rope.concatenate(new NativeString("")));
+    }
+}
@@ -0,0 +1,98 @@
+package com.andrewsenin.pierogi.embedding;
+
+import com.andrewsenin.pierogi.io.ErrorType;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PierogiEngineTest {
+
+    private static final String SCALE = "scale = \\x { x * factor }\nmap(scale, items)";
+
+    private final PierogiEngine engine = new PierogiEngine();
+
+    @Test
+    void execute_one_script_with_different_bindings() {
+        CompiledScript script = engine.compile(SCALE);
+        assertEquals(List.of("scale", "factor", "items"), script.getGlobalSymbols());
+        assertEquals(List.of(2.0, 4.0), execute(script, Map.of("factor", 2, "items", List.of(1, 2))));
+        assertEquals(List.of(-0.5), execute(script, Map.of("factor", -0.5, "items", new int[]{1})));
+    }
+
+    @Test
+    void convert_values_both_ways() {
+        CompiledScript script = engine.compile("[value, value]");
+        assertEquals(Arrays.asList(null, null), execute(script, Collections.singletonMap("value", null)));
+        assertEquals(List.of(true, true), execute(script, Map.of("value", true)));
+        assertEquals(List.of("s", "s"), execute(script, Map.of("value", 's')));
+        assertEquals(List.of(List.of(), List.of()), execute(script, Map.of("value", List.of())));
+        assertThrows(IllegalArgumentException.class, () -> execute(script, Map.of("value", new Object())));
+    }
+
+    @Test
+    void print_to_writer_and_read_from_reader() {
+        StringWriter output = new StringWriter();
+        engine.compile("println(\"name?\")\nprintln(\"hi \" .. input())").execute(Map.of(), new StringReader("pierogi\n"), output);
+        assertEquals("name?\nhi pierogi\n", output.toString());
+    }
+
+    @Test
+    void throw_errors_with_their_location() {
+        ScriptError parseError = assertThrows(ScriptError.class, () -> engine.compile("x = (1 + 2"));
+        assertEquals(ErrorType.UNMATCHED_PARENTHESIS, parseError.getErrorType());
+        ScriptError runtimeError = assertThrows(ScriptError.class, () -> execute(engine.compile("f = \\x { x + 1 }\n\nf(y)"), Map.of("y", "s")));
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, runtimeError.getErrorType());
+        assertEquals(1, runtimeError.getLineNumber());
+        assertEquals(List.of("In <function/1> on line 3"), runtimeError.getFunctionScopes());
+        ScriptError unboundError = assertThrows(ScriptError.class, () -> execute(engine.compile("y"), Map.of()));
+        assertEquals(ErrorType.UNDEFINED_SYMBOL, unboundError.getErrorType());
+    }
+
+    @Test
+    void write_definitions_back_to_globals() {
+        Map<String, Object> globals = new HashMap<>(Map.of("x", 1));
+        engine.compile("y = x + 1").executeIn(globals, Reader.nullReader(), new StringWriter());
+        assertEquals(Map.of("x", 1, "y", 2.0), globals);
+        assertEquals(3.0, engine.compile("x + y").executeIn(globals, Reader.nullReader(), new StringWriter()));
+    }
+
+    @Test
+    void throw_the_script_error_when_globals_cant_be_written_back() {
+        Map<String, Object> globals = Collections.unmodifiableMap(new HashMap<>());
+        ScriptError error = assertThrows(ScriptError.class,
+                () -> engine.compile("y = 1\ny + \"s\"").executeIn(globals, Reader.nullReader(), new StringWriter()));
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, error.getErrorType());
+        assertInstanceOf(UnsupportedOperationException.class, error.getSuppressed()[0]);
+    }
+
+    @Test
+    void execute_one_script_from_many_threads() throws InterruptedException, ExecutionException {
+        CompiledScript script = engine.compile("sum = \\self, n, acc { if n == 0 { acc } else { self(self, n - 1, acc + n * factor) } }\nsum(sum, 2000, 0)");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int factor = i;
+                results.add(executor.submit(() -> execute(script, Map.of("factor", factor))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(2001000.0 * i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Object execute(CompiledScript script, Map<String, ?> bindings) {
+        return script.execute(bindings, Reader.nullReader(), new StringWriter());
+    }
+}
@@ -0,0 +1,42 @@
+package com.andrewsenin.pierogi.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import javax.script.*;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PierogiScriptEngineTest {
+
+    private final ScriptEngine scriptEngine = new PierogiScriptEngineFactory().getScriptEngine();
+
+    @Test
+    void keep_definitions_between_evaluations() throws ScriptException {
+        scriptEngine.put("base", 10);
+        scriptEngine.eval("total = base + 1");
+        assertEquals(11.0, scriptEngine.get("total"));
+        assertEquals(10, scriptEngine.get("base"));
+        assertEquals(22.0, scriptEngine.eval("total * 2"));
+    }
+
+    @Test
+    void evaluate_compiled_script_in_different_contexts() throws ScriptException {
+        javax.script.CompiledScript script = ((Compilable) scriptEngine).compile("println(greeting)");
+        for (String greeting : new String[]{"hello", "hi"}) {
+            ScriptContext context = new SimpleScriptContext();
+            StringWriter output = new StringWriter();
+            context.setWriter(output);
+            context.setAttribute("greeting", greeting, ScriptContext.ENGINE_SCOPE);
+            script.eval(context);
+            assertEquals(greeting + "\n", output.toString());
+        }
+    }
+
+    @Test
+    void report_errors_as_script_exceptions() {
+        ScriptException exception = assertThrows(ScriptException.class, () -> scriptEngine.eval("\n1 + \"s\""));
+        assertEquals(2, exception.getLineNumber());
+    }
+}
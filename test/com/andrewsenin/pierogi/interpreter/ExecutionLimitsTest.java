@@ -0,0 +1,111 @@
+package com.andrewsenin.pierogi.interpreter;
+
+import com.andrewsenin.pierogi.compiler.VirtualMachine;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.TestIoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ExecutionLimitsTest {
+
+    private static final String LOOP = "loop = \\self, n { self(self, n + 1) }\n";
+
+    @Test
+    void stop_loops_and_large_builtins_at_step_limit() {
+        ExecutionLimits limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, interpretExpectingError(LOOP + "loop(loop, 0)", limits));
+        limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, interpretExpectingError("toString(iota(1000000000000))", limits));
+        limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, interpretExpectingError(LOOP + "pmap(\\x { loop(loop, x) }, iota(4))", limits));
+    }
+
+    @Test
+    void charge_only_for_the_part_of_a_range_that_is_used() {
+        ExecutionLimits limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)), limits)
+                .interpret("xs = iota(1000000000000)\nprintln(first(rest(rest(xs))))\nprintln(filter(\\x { x > 5 }, iota(8)))");
+        assertEquals("2\n[6, 7]\n", ioManager.getOutput());
+    }
+
+    @Test
+    void run_programs_within_limits_to_completion() {
+        ExecutionLimits limits = new ExecutionLimits(10000, Duration.ofMinutes(1), 100);
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)), limits).interpret("println(map(\\x { x * 2 }, iota(1000)) == pmap(\\x { x * 2 }, iota(1000)))");
+        assertEquals("true\n", ioManager.getOutput());
+    }
+
+    @Test
+    void stop_at_deadline() {
+        ExecutionLimits limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, Duration.ofMillis(50), ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        assertEquals(ErrorType.TIME_LIMIT_EXCEEDED, interpretExpectingError(LOOP + "loop(loop, 0)", limits));
+    }
+
+    @Test
+    void stop_when_cancelled_from_another_thread() {
+        ExecutionLimits limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, ExecutionLimits.NO_TIME_LIMIT, ExecutionLimits.NO_CALL_DEPTH_LIMIT);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            limits.cancel();
+        });
+        canceller.start();
+        assertEquals(ErrorType.EXECUTION_CANCELLED, interpretExpectingError(LOOP + "loop(loop, 0)", limits));
+    }
+
+    @Test
+    void stop_deep_recursion_at_call_depth_limit() {
+        ExecutionLimits limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, interpretExpectingError("f = \\self { 1 + self(self) }\nf(f)", limits));
+    }
+
+    @Test
+    void count_calls_in_parallel_builtins_on_top_of_the_callers_depth() {
+        String source = "up = \\self, n { if n == 0 { 0 } else { 1 + self(self, n - 1) } }\n"
+                + "down = \\self, n { if n == 0 { first(pmap(\\x { up(up, 60) }, [1])) } else { 1 + self(self, n - 1) } }\n";
+        ExecutionLimits limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, interpretExpectingError(source + "down(down, 60)", limits));
+        assertNull(interpretExpectingError(source + "down(down, 20)", limits));
+    }
+
+    @Test
+    void enforce_limits_on_the_virtual_machine() {
+        ExecutionLimits limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, runOnVirtualMachineExpectingError(LOOP + "loop(loop, 0)", limits));
+        limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, runOnVirtualMachineExpectingError(LOOP + "map(\\x { loop(loop, x) }, [1])", limits));
+        limits = new ExecutionLimits(10000, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.STEP_LIMIT_EXCEEDED, runOnVirtualMachineExpectingError("toString(iota(1000000000000))", limits));
+        limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, runOnVirtualMachineExpectingError("f = \\self { 1 + self(self) }\nf(f)", limits));
+        limits = new ExecutionLimits(ExecutionLimits.NO_STEP_LIMIT, ExecutionLimits.NO_TIME_LIMIT, 100);
+        assertEquals(ErrorType.CALL_DEPTH_LIMIT_EXCEEDED, runOnVirtualMachineExpectingError("f = \\self { 1 + first(pmap(\\x { self(self) }, [1])) }\nf(f)", limits));
+    }
+
+    private static ErrorType interpretExpectingError(String source, ExecutionLimits limits) {
+        TestIoManager ioManager = new TestIoManager();
+        try {
+            new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)), limits).interpret(source);
+        } catch (UnwindingException ignored) {
+        }
+        return ioManager.getMostRecentErrorType();
+    }
+
+    private static ErrorType runOnVirtualMachineExpectingError(String source, ExecutionLimits limits) {
+        TestIoManager ioManager = new TestIoManager();
+        try {
+            new VirtualMachine(ioManager, new Frame(BuiltinsFrame.INSTANCE), true, limits, 0).interpret(source);
+        } catch (UnwindingException ignored) {
+        }
+        return ioManager.getMostRecentErrorType();
+    }
+}
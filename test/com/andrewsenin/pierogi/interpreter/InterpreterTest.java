@@ -1,17 +1,32 @@
 package com.andrewsenin.pierogi.interpreter;
 
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.datatypes.NativeFunction;
+import com.andrewsenin.pierogi.datatypes.NativeNumber;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.IoManager;
+import com.andrewsenin.pierogi.io.TestIoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InterpreterTest {
     @Test
     void zero_division_causes_runtime_error() {
-
+        TestIoManager ioManager = interpretExpectingError("1 + 2 / (3 - 3) * 4");
+        assertEquals(ErrorType.DIVISION_BY_ZERO, ioManager.getMostRecentErrorType());
+        assertEquals("DivisionExpression", ioManager.getMostRecentErrorLexeme());
     }
 
     @Test
@@ -19,5 +34,248 @@ public class InterpreterTest {
 
     }
 
+    @Test
+    void evaluate_nested_arithmetic() {
+        assertEquals(Arrays.asList("16", "true", "2", "-0.5"), interpret("-(1 - 3) * 2 ^ 3\n(1 + 1) * 2 <= -(-4)\nx = 2\n(x - 3) / x"));
+    }
+
+    @Test
+    void report_nested_arithmetic_type_errors_at_innermost_operation() {
+        TestIoManager ioManager = interpretExpectingError("s = \"s\"\n1 * (2 - (s + 3))");
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals("AdditionExpression", ioManager.getMostRecentErrorLexeme());
+        assertEquals(2, ioManager.getMostRecentErrorLineNumber());
+        ioManager = interpretExpectingError("-(1 < 2) + 1");
+        assertEquals("NegationExpression", ioManager.getMostRecentErrorLexeme());
+    }
+
+    @Test
+    void report_grouped_operands_that_arent_numbers_at_their_operation() {
+        TestIoManager ioManager = interpretExpectingError("x = 2\n(x * 3 - x) / (x + 2) ^ ((\"s\"))");
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals("ExponentExpression", ioManager.getMostRecentErrorLexeme());
+        ioManager = interpretExpectingError("1 + (([] : [])) * print(\"evaluated\")");
+        assertEquals("MultiplicationExpression", ioManager.getMostRecentErrorLexeme());
+        assertEquals("evaluated", ioManager.getOutput());
+    }
+
+    @Test
+    void keep_global_scope_after_error_inside_call() {
+        TestIoManager ioManager = new TestIoManager();
+        Interpreter interpreter = new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+        interpreter.interpret("x = 1\nf = \\y { z = y\nz + \"s\" }");
+        try {
+            interpreter.interpret("f(2)");
+        } catch (UnwindingException ignored) {
+        }
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals("2", interpreter.interpret("x + 1").get(0).makeValueRepresentation());
+    }
+
+    @Test
+    void keep_global_scope_after_error_inside_block() {
+        TestIoManager ioManager = new TestIoManager();
+        Interpreter interpreter = new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+        interpreter.interpret("x = 1");
+        try {
+            interpreter.interpret("if true { y = 2\ny + \"s\" } else { nil }");
+        } catch (UnwindingException ignored) {
+        }
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals("2", interpreter.interpret("x + 1").get(0).makeValueRepresentation());
+    }
+
+    @Test
+    void call_one_function_from_many_threads() throws InterruptedException, ExecutionException {
+        List<NativeData> values = new Interpreter(new TestIoManager(), new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(
+                "f = \\x { x * 2 + 1 }\nsum = \\self, n, acc { if n == 0 { acc } else { self(self, n - 1, acc + f(n)) } }");
+        NativeFunction sum = (NativeFunction) values.get(1);
+        List<NativeData> arguments = Arrays.asList(sum, NativeNumber.of(2000), NativeNumber.of(0));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<NativeData>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> sum.call(arguments, new TestIoManager())));
+            }
+            for (Future<NativeData> result : results) {
+                assertEquals("4004000", result.get().makeValueRepresentation());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void evaluate_each_expression_before_parsing_the_next() {
+        TestIoManager ioManager = new TestIoManager();
+        try {
+            new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).execute("println(\"first\")\n\n)");
+        } catch (UnwindingException ignored) {
+        }
+        assertEquals("first\n", ioManager.getOutput());
+        assertEquals(ErrorType.UNEXPECTED_TOKEN, ioManager.getMostRecentErrorType());
+        assertEquals(3, ioManager.getMostRecentErrorLineNumber());
+    }
+
+    @Test
+    void shadow_builtins_without_changing_them() {
+        assertEquals(Arrays.asList("1", "1"), interpret("print = 1\nprint"));
+        assertEquals(Arrays.asList("<builtin function/1>"), interpret("print"));
+        assertThrows(UnsupportedOperationException.class, () -> BuiltinsFrame.INSTANCE.addBinding(0, NativeNumber.of(1)));
+    }
+
+    @Test
+    void keep_item_order_in_parallel_map_and_filter() {
+        assertEquals(Arrays.asList("[0, 1, 4, 9, 16, 25, 36, 49]", "[5, 6, 7]", "true"), interpret(
+                "pmap(\\x { x * x }, iota(8))\npfilter(\\x { x > 4 }, iota(8))\npmap(\\x { x + 1 }, iota(1000)) == map(\\x { x + 1 }, iota(1000))"));
+    }
+
+    @Test
+    void report_one_error_from_parallel_calls() {
+        TestIoManager ioManager = interpretExpectingError("\npmap(\\x { x + \"s\" }, iota(100))");
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals(2, ioManager.getMostRecentErrorLineNumber());
+        assertEquals(1, ioManager.getErrorCount());
+    }
+
+    @Test
+    void print_whole_values_from_parallel_calls() {
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(
+                "pmap(\\x { println([x, x, x, x, x, x, x, x]) }, iota(2000))");
+        String[] lines = ioManager.getOutput().split("\n");
+        assertEquals(2000, lines.length);
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(lines[i].matches("\\[(\\d+)(, \\1){7}]"), lines[i]);
+        }
+    }
+
+    @Test
+    void trace_errors_in_parallel_calls_like_sequential_ones() {
+        String source = "f = \\x { g = \\y { y + \"s\" }\n1 + g(x) }\nh = \\xs { 1 : %s(f, xs) }\n\n1 : h([1])";
+        TestIoManager sequentialIoManager = interpretExpectingError(String.format(source, "map"));
+        TestIoManager parallelIoManager = interpretExpectingError(String.format(source, "pmap"));
+        assertEquals(Arrays.asList("<function/1> on line 2", "<builtin function/2> on line 3", "<function/1> on line 5"),
+                sequentialIoManager.getMostRecentErrorTrace());
+        assertEquals(sequentialIoManager.getMostRecentErrorTrace(), parallelIoManager.getMostRecentErrorTrace());
+        assertEquals(sequentialIoManager.getMostRecentErrorLineNumber(), parallelIoManager.getMostRecentErrorLineNumber());
+    }
+
+    @Test
+    void give_the_same_items_from_chained_map_and_filter() {
+        assertEquals(Arrays.asList("[1, 9, 25]", "25", "true", "[]"), interpret(
+                "xs = filter(\\x { x > 0 }, map(\\x { x * x }, filter(\\x { x / 2 /= 0 }, [1, 3, 5])))\nfirst(rest(rest(xs)))\n"
+                        + "xs == 1 : map(\\x { (2 * x + 3) ^ 2 }, iota(2))\nfilter(\\x { x > 10 }, iota(5))"));
+    }
+
+    @Test
+    void call_functions_in_map_and_filter_right_away() {
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(
+                "xs = map(\\x { print(x) }, iota(3))\nprintln(\"-\")\nys = map(\\x { x + 1 }, filter(\\x { print(x) == nil }, iota(2)))");
+        assertEquals("012-\n01", ioManager.getOutput());
+    }
+
+    @Test
+    void call_whichever_function_a_call_site_is_given() {
+        TestIoManager ioManager = new TestIoManager();
+        new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(
+                "apply = \\f { f(2) }\nsum = \\self, n, f, acc { if n == 0 { acc } else { self(self, n - 1, f, acc + apply(f)) } }\n"
+                        + "println(sum(sum, 1500, \\x { x + 1 }, 0))\nprintln(sum(sum, 10, \\x { x * 10 }, 0))\nprintln(apply(toString))");
+        assertEquals("4500\n200\n2\n", ioManager.getOutput());
+    }
+
+    @Test
+    void check_a_call_site_again_only_when_it_gets_a_new_function() {
+        Interpreter interpreter = new Interpreter(new TestIoManager(), new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+        NativeFunction sum = (NativeFunction) interpreter.interpret(
+                "sum = \\f, n, acc { if n == 0 { acc } else { sum(f, n - 1, acc + f(n)) } }").get(0);
+        ArityCountingFunction identity = new ArityCountingFunction();
+        NativeData result = interpreter.callFunction(sum, Arrays.asList(identity, NativeNumber.of(100), NativeNumber.of(0)), 0);
+        assertEquals("5050", result.makeValueRepresentation());
+        assertEquals(1, identity.arityCheckCount);
+        interpreter.callFunction(sum, Arrays.asList(new ArityCountingFunction(), NativeNumber.of(1), NativeNumber.of(0)), 0);
+        interpreter.callFunction(sum, Arrays.asList(identity, NativeNumber.of(1), NativeNumber.of(0)), 0);
+        assertEquals(2, identity.arityCheckCount);
+    }
+
+    @Test
+    void check_arity_again_when_a_call_site_gets_a_new_function() {
+        TestIoManager ioManager = interpretExpectingError("call = \\f { f(2) }\ncall(\\x { x })\ncall(\\x, y { x })");
+        assertEquals(ErrorType.INCORRECT_NUMBER_OF_ARGUMENTS, ioManager.getMostRecentErrorType());
+        ioManager = interpretExpectingError("call = \\f { f(2) }\ncall(\\x { x })\ncall(2)");
+        assertEquals(ErrorType.UNCALLABLE_VALUE, ioManager.getMostRecentErrorType());
+    }
+
+    @Test
+    void call_functions_by_the_name_they_are_defined_under() {
+        assertEquals(Arrays.asList("<function/1>", "120", "<function/1>", "10"), interpret(
+                "fact = \\n { if n == 0 { 1 } else { n * fact(n - 1) } }\nfact(5)\n"
+                        + "g = \\x { h = \\n { if n == 0 { 0 } else { n + h(n - 1) } }\nh(x) }\ng(4)"));
+    }
+
+    @Test
+    void keep_earlier_values_of_a_name_a_function_is_redefined_under() {
+        assertEquals(Arrays.asList("1", "<function/0>", "1"), interpret("f = 1\nf = \\ { f }\nf()"));
+    }
+
+    @Test
+    void run_deep_self_tail_calls_in_constant_stack() {
+        assertEquals(Arrays.asList("<function/2>", "100000", "<function/1>", "\"done\""), interpret(
+                "count = \\n, acc { if n == 0 { acc } else { count(n - 1, acc + 1) } }\ncount(100000, 0)\n"
+                        + "down = \\n { if n > 0 { (down(n - 1)) } else { \"done\" } }\ndown(100000)"));
+    }
+
+    @Test
+    void run_deep_mutual_tail_calls_in_constant_stack() {
+        assertEquals(Arrays.asList("false", "true"), interpret(
+                "isEven = \\n, even, odd { if n == 0 { true } else { odd(n - 1, even, odd) } }\n"
+                        + "isOdd = \\n, even, odd { if n == 0 { false } else { (even(n - 1, even, odd)) } }\n"
+                        + "isEven(100001, isEven, isOdd)\nisOdd(100001, isEven, isOdd)").subList(2, 4));
+    }
+
     // TODO: and and or short circuit
+
+    private static class ArityCountingFunction extends NativeFunction {
+
+        private int arityCheckCount = 0;
+
+        @Override
+        public NativeData call(List<NativeData> arguments, IoManager ioManager) {
+            return arguments.get(0);
+        }
+
+        @Override
+        public int getArity() {
+            arityCheckCount++;
+            return 1;
+        }
+
+        @Override
+        public String makeValueRepresentation() {
+            return "<counting function>";
+        }
+
+        @Override
+        public String makePrintRepresentation() {
+            return makeValueRepresentation();
+        }
+    }
+
+    private static List<String> interpret(String source) {
+        List<String> representations = new ArrayList<>();
+        for (NativeData value : new Interpreter(new TestIoManager(), new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(source)) {
+            representations.add(value.makeValueRepresentation());
+        }
+        return representations;
+    }
+
+    private static TestIoManager interpretExpectingError(String source) {
+        TestIoManager ioManager = new TestIoManager();
+        try {
+            new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE))).interpret(source);
+        } catch (UnwindingException ignored) {
+        }
+        return ioManager;
+    }
 }
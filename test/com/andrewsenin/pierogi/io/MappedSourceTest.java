@@ -0,0 +1,58 @@
+package com.andrewsenin.pierogi.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedSourceTest {
+
+    @Test
+    void read_ascii_source() throws MalformedInputException {
+        expectSameCharacters("x = \"ascii only\"\nprintln(x)");
+    }
+
+    @Test
+    void decode_multibyte_characters_and_surrogate_pairs() throws MalformedInputException {
+        expectSameCharacters("s = \"£ Ʃ € 𝄞 pierogi 🥟\"\n# 𝄞𝄞\nprintln(s)");
+    }
+
+    @Test
+    void read_characters_in_any_order_across_checkpoints() throws MalformedInputException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            source.append(i % 7 == 0 ? "𝄞" : i % 3 == 0 ? "€" : "a").append(i % 10);
+        }
+        String expected = source.toString();
+        MappedSource mappedSource = map(expected);
+        for (int i = expected.length() - 1; i >= 0; i -= 97) {
+            assertEquals(expected.charAt(i), mappedSource.charAt(i));
+        }
+        for (int i = 0; i < expected.length(); i += 4099) {
+            assertEquals(expected.substring(i, Math.min(i + 50, expected.length())), mappedSource.subSequence(i, Math.min(i + 50, expected.length())));
+        }
+        assertEquals(expected, mappedSource.toString());
+    }
+
+    @Test
+    void reject_malformed_utf8() {
+        assertThrows(MalformedInputException.class, () -> new MappedSource(ByteBuffer.wrap(new byte[]{'a', (byte) 0xC3})));
+        assertThrows(MalformedInputException.class, () -> new MappedSource(ByteBuffer.wrap(new byte[]{(byte) 0x80, 'a'})));
+    }
+
+    private static void expectSameCharacters(String source) throws MalformedInputException {
+        MappedSource mappedSource = map(source);
+        assertEquals(source.length(), mappedSource.length());
+        for (int i = 0; i < source.length(); i++) {
+            assertEquals(source.charAt(i), mappedSource.charAt(i));
+        }
+    }
+
+    private static MappedSource map(String source) throws MalformedInputException {
+        return new MappedSource(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.andrewsenin.pierogi.io;
+
+import com.andrewsenin.pierogi.datatypes.NativeList;
+import com.andrewsenin.pierogi.datatypes.NativeString;
+import com.andrewsenin.pierogi.datatypes.RangeList;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TruncatingAppendableTest {
+
+    @Test
+    void stop_writing_values_at_the_limit() {
+        StringBuilder output = new StringBuilder();
+        NativeList list = new RangeList(0, Integer.MAX_VALUE);
+        assertThrows(TruncatingAppendable.LimitReachedException.class,
+                () -> list.appendValueRepresentation(new TruncatingAppendable(output, 10)));
+        assertEquals("[0, 1, 2, ", output.toString());
+    }
+
+    @Test
+    void write_values_within_the_limit_whole() throws IOException {
+        StringBuilder output = new StringBuilder();
+        NativeList list = NativeList.of(Arrays.asList(new NativeString("a"), new RangeList(0, 2)));
+        list.appendValueRepresentation(new TruncatingAppendable(output, 15));
+        assertEquals("[\"a\", [0, 1]]", output.toString());
+        assertEquals(list.makeValueRepresentation(), output.toString());
+    }
+}
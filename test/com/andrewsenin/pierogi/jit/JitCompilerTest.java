@@ -0,0 +1,92 @@
+package com.andrewsenin.pierogi.jit;
+
+import com.andrewsenin.pierogi.ast.DefinitionExpression;
+import com.andrewsenin.pierogi.ast.Expression;
+import com.andrewsenin.pierogi.ast.FunctionExpression;
+import com.andrewsenin.pierogi.datatypes.NativeData;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.interpreter.Environment;
+import com.andrewsenin.pierogi.interpreter.Frame;
+import com.andrewsenin.pierogi.interpreter.Interpreter;
+import com.andrewsenin.pierogi.io.ErrorType;
+import com.andrewsenin.pierogi.io.TestIoManager;
+import com.andrewsenin.pierogi.io.UnwindingException;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.parser.Parser;
+import com.andrewsenin.pierogi.resolver.Resolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JitCompilerTest {
+
+    private static final String SUM_LOOP = "sum = \\self, n, acc { if n == 0 { acc } else { self(self, n - 1, acc + f(n)) } }\n";
+
+    @Test
+    void compile_every_kind_of_expression() {
+        List<Expression> expressions = resolveSource("a = 1\nf = \\x { y = [nil, true, false, \"s\" .. \"t\", 1 : [], -x, not (x == 1), x /= 2]\n"
+                + " if x > 0 and x >= 1 or x < 0 { \\z { z * y / x ^ 2 - a } } else { g(x <= 0) } }");
+        assertNotNull(JitCompiler.compile(getFunctionDefinedBy(expressions.get(1))));
+    }
+
+    @Test
+    void compile_hot_functions_and_keep_results() {
+        List<Expression> expressions = resolveSource("f = \\x { x * 2 + 1 }\n" + SUM_LOOP + "sum(sum, 2 * " + JitCompiler.COMPILATION_THRESHOLD + ", 0)");
+        TestIoManager ioManager = new TestIoManager();
+        List<NativeData> values = makeInterpreter(ioManager).interpret(expressions);
+        FunctionExpression function = getFunctionDefinedBy(expressions.get(0));
+        assertNotNull(function.getCompiledBody());
+        int n = 2 * JitCompiler.COMPILATION_THRESHOLD;
+        assertEquals(String.valueOf(n * (n + 1) + n), values.get(2).makeValueRepresentation());
+    }
+
+    @Test
+    void define_recursive_functions_in_compiled_bodies() {
+        List<Expression> expressions = resolveSource("f = \\x { h = \\n { if n == 0 { 0 } else { n + h(n - 1) } }\nx + h(3) }\n"
+                + SUM_LOOP + "sum(sum, 2 * " + JitCompiler.COMPILATION_THRESHOLD + ", 0)");
+        List<NativeData> values = makeInterpreter(new TestIoManager()).interpret(expressions);
+        assertNotNull(getFunctionDefinedBy(expressions.get(0)).getCompiledBody());
+        int n = 2 * JitCompiler.COMPILATION_THRESHOLD;
+        assertEquals(String.valueOf(n * (n + 1) / 2 + 6 * n), values.get(2).makeValueRepresentation());
+    }
+
+    @Test
+    void report_errors_in_compiled_bodies_like_interpreter() {
+        List<Expression> expressions = resolveSource("\nf = \\x { x + 1 }\n" + SUM_LOOP + "sum(sum, " + JitCompiler.COMPILATION_THRESHOLD + ", 0)\nf(\"one\")");
+        TestIoManager ioManager = new TestIoManager();
+        try {
+            makeInterpreter(ioManager).interpret(expressions);
+        } catch (UnwindingException ignored) {
+        }
+        assertNotNull(getFunctionDefinedBy(expressions.get(0)).getCompiledBody());
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, ioManager.getMostRecentErrorType());
+        assertEquals("AdditionExpression", ioManager.getMostRecentErrorLexeme());
+        assertEquals(2, ioManager.getMostRecentErrorLineNumber());
+    }
+
+    @Test
+    void leave_functions_below_threshold_interpreted() {
+        List<Expression> expressions = resolveSource("f = \\x { x }\nf(1)");
+        makeInterpreter(new TestIoManager()).interpret(expressions);
+        assertNull(getFunctionDefinedBy(expressions.get(0)).getCompiledBody());
+    }
+
+    private static List<Expression> resolveSource(String source) {
+        TestIoManager ioManager = new TestIoManager();
+        List<Expression> expressions = new Parser(new Lexer(source, ioManager).lexSource(), ioManager).parseTokens();
+        new Resolver().resolve(expressions);
+        return expressions;
+    }
+
+    private static FunctionExpression getFunctionDefinedBy(Expression expression) {
+        return (FunctionExpression) ((DefinitionExpression) expression).getDefinition();
+    }
+
+    private static Interpreter makeInterpreter(TestIoManager ioManager) {
+        return new Interpreter(ioManager, new Environment(new Frame(BuiltinsFrame.INSTANCE)));
+    }
+}
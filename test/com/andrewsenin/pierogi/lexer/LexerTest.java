@@ -203,6 +203,15 @@ public class LexerTest {
         expectNumberTokenValue("00001.23", 1.23);
     }
 
+    @Test
+    void materialize_lexemes_from_source_offsets() {
+        TokenList tokens = new Lexer("x = \"a\nb\" .. y\n# comment\n42", new DummyIoManager()).lexSource();
+        assertEquals(Arrays.asList("x", "=", "\"a\nb\"", "..", "y", "\n", "\n", "42", ""), getLexemes(tokens));
+        assertEquals(2, tokens.getLineNumber(2));
+        assertEquals(4, tokens.getLineNumber(7));
+        assertEquals(42.0, tokens.getNumberValue(7));
+    }
+
     private void expectEof(String source) {
         Lexer lexer = new Lexer(source, new DummyIoManager());
         List<Token> tokens = lexer.lexSource();
@@ -215,6 +224,12 @@ public class LexerTest {
         return tokenTypes;
     }
 
+    private List<String> getLexemes(TokenList tokens) {
+        List<String> lexemes = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) lexemes.add(tokens.getLexeme(i));
+        return lexemes;
+    }
+
     private void expectSingleToken(String source, TokenType tokenType) {
         expectTokenSequence(source, Collections.singletonList(tokenType));
     }
@@ -0,0 +1,63 @@
+package com.andrewsenin.pierogi.optimizer;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.io.DummyIoManager;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+public class ConstantFolderTest {
+
+    @Test
+    void fold_literal_arithmetic_logic_and_concatenation() {
+        List<Expression> expressions = foldSource("2 * pi * 3\n\"a\" .. \"b\"\nnot true\n1 < 2 and 3 >= 3\n((4))\nfalse and x\n1 == \"1\"");
+        assertEquals(new NumberExpression(2 * Math.PI * 3), expressions.get(0));
+        assertEquals(new StringExpression("ab"), expressions.get(1));
+        assertInstanceOf(FalseExpression.class, expressions.get(2));
+        assertInstanceOf(TrueExpression.class, expressions.get(3));
+        assertEquals(new NumberExpression(4.0), expressions.get(4));
+        assertInstanceOf(FalseExpression.class, expressions.get(5));
+        assertInstanceOf(FalseExpression.class, expressions.get(6));
+    }
+
+    @Test
+    void leave_expressions_that_would_fail_unfolded() {
+        List<Expression> expressions = foldSource("1 / 0\n(1 + 2) + \"a\"\nnot 1\ntrue and 1\nif 1 { 2 } else { 3 }");
+        assertEquals(new DivisionExpression(new NumberExpression(1.0), new NumberExpression(0.0)), expressions.get(0));
+        assertEquals(new AdditionExpression(new NumberExpression(3.0), new StringExpression("a")), expressions.get(1));
+        assertInstanceOf(NotExpression.class, expressions.get(2));
+        assertInstanceOf(AndExpression.class, expressions.get(3));
+        assertInstanceOf(IfExpression.class, expressions.get(4));
+    }
+
+    @Test
+    void replace_constant_ifs_with_the_branch_taken() {
+        List<Expression> expressions = foldSource("if 1 < 2 { x } else { y }\nif false { x } else { z = 1 }\nif true { x\ny } else { z }");
+        assertEquals(new IdentifierExpression("x"), expressions.get(0));
+        assertInstanceOf(IfExpression.class, expressions.get(1));
+        assertInstanceOf(IfExpression.class, expressions.get(2));
+    }
+
+    @Test
+    void leave_shadowed_builtin_constants_alone() {
+        List<Expression> expressions = foldSource("\\pi { 2 * pi }\npi\npi = 3\npi");
+        FunctionExpression function = (FunctionExpression) expressions.get(0);
+        assertInstanceOf(MultiplicationExpression.class, function.getDefinition().get(0));
+        assertEquals(new NumberExpression(Math.PI), expressions.get(1));
+        assertEquals(new IdentifierExpression("pi"), expressions.get(3));
+    }
+
+    private static List<Expression> foldSource(String source) {
+        Parser parser = new Parser(new Lexer(source, new DummyIoManager()).lexSource(), new DummyIoManager());
+        ConstantFolder constantFolder = new ConstantFolder();
+        List<Expression> expressions = new ArrayList<>();
+        parser.parseTokens().forEach(expression -> expressions.add(constantFolder.fold(expression)));
+        return expressions;
+    }
+}
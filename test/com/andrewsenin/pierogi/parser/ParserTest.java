@@ -3,7 +3,7 @@ package com.andrewsenin.pierogi.parser;
 import com.andrewsenin.pierogi.ast.*;
 import com.andrewsenin.pierogi.io.DummyIoManager;
 import com.andrewsenin.pierogi.lexer.Lexer;
-import com.andrewsenin.pierogi.lexer.Token;
+import com.andrewsenin.pierogi.lexer.TokenList;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
@@ -193,7 +193,7 @@ public class ParserTest {
 
     private Expression parseSingleLine(String source) {
         Lexer lexer = new Lexer(source, new DummyIoManager());
-        List<Token> tokens = lexer.lexSource();
+        TokenList tokens = lexer.lexSource();
         Parser parser = new Parser(tokens, new DummyIoManager());
         return parser.parseTokens().get(0);
     }
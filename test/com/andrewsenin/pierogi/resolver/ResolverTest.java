@@ -0,0 +1,135 @@
+package com.andrewsenin.pierogi.resolver;
+
+import com.andrewsenin.pierogi.ast.*;
+import com.andrewsenin.pierogi.interpreter.BuiltinsFrame;
+import com.andrewsenin.pierogi.io.DummyIoManager;
+import com.andrewsenin.pierogi.lexer.Lexer;
+import com.andrewsenin.pierogi.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResolverTest {
+
+    @Test
+    void resolve_global_definitions_to_consecutive_slots() {
+        List<Expression> expressions = resolveSource("x = 1\ny = 2\nx = 3\ny");
+        assertEquals(0, ((DefinitionExpression) expressions.get(0)).getSlot());
+        assertEquals(1, ((DefinitionExpression) expressions.get(1)).getSlot());
+        assertEquals(0, ((DefinitionExpression) expressions.get(2)).getSlot());
+        assertIdentifierAddress(expressions.get(3), 0, 1);
+    }
+
+    @Test
+    void bind_builtins_to_their_slots() {
+        List<Expression> expressions = resolveSource("pi\nprint = 1\nprint");
+        assertIdentifierAddress(expressions.get(0), Resolver.BUILTIN_DEPTH, BuiltinsFrame.lookUpSlotOf("pi"));
+        assertIdentifierAddress(expressions.get(2), 0, 0);
+    }
+
+    @Test
+    void leave_undefined_symbols_unresolved() {
+        List<Expression> expressions = resolveSource("nothing");
+        assertEquals(Resolver.UNRESOLVED_DEPTH, ((IdentifierExpression) expressions.get(0)).getDepth());
+    }
+
+    @Test
+    void resolve_parameters_and_locals_in_function_frame() {
+        FunctionExpression function = (FunctionExpression) resolveSource("\\a, b { c = a\nb }").get(0);
+        assertEquals(3, function.getFrameSize());
+        assertEquals(2, ((DefinitionExpression) function.getDefinition().get(0)).getSlot());
+        assertIdentifierAddress(((DefinitionExpression) function.getDefinition().get(0)).getDefinition(), 0, 0);
+        assertIdentifierAddress(function.getDefinition().get(1), 0, 1);
+    }
+
+    @Test
+    void resolve_uses_before_block_definition_to_outer_scope() {
+        IfExpression ifExpression = (IfExpression) resolveSource("x = 1\nif true { y = x\nx = 2\nx } else { x }").get(1);
+        assertEquals(2, ifExpression.getConsequentFrameSize());
+        assertEquals(0, ifExpression.getAlternativeFrameSize());
+        assertIdentifierAddress(((DefinitionExpression) ifExpression.getConsequent().get(0)).getDefinition(), 1, 0);
+        assertIdentifierAddress(ifExpression.getConsequent().get(2), 0, 1);
+        assertIdentifierAddress(ifExpression.getAlternative().get(0), 1, 0);
+    }
+
+    @Test
+    void capture_only_free_variables_of_functions() {
+        List<Expression> expressions = resolveSource("x = 1\ny = 2\n\\a { \\b { a + y + b + pi } }");
+        FunctionExpression outer = (FunctionExpression) expressions.get(2);
+        FunctionExpression inner = (FunctionExpression) outer.getDefinition().get(0);
+        assertArrayEquals(new int[]{0}, outer.getCaptureDepths());
+        assertArrayEquals(new int[]{1}, outer.getCaptureSlots());
+        assertArrayEquals(new int[]{0, 1}, inner.getCaptureDepths());
+        assertArrayEquals(new int[]{0, 0}, inner.getCaptureSlots());
+        Binary sum = (Binary) inner.getDefinition().get(0);
+        Binary innerSum = (Binary) sum.getLeft();
+        assertIdentifierAddress(sum.getRight(), Resolver.BUILTIN_DEPTH, BuiltinsFrame.lookUpSlotOf("pi"));
+        assertIdentifierAddress(((Binary) innerSum.getLeft()).getLeft(), 1, 0);
+        assertIdentifierAddress(((Binary) innerSum.getLeft()).getRight(), 1, 1);
+        assertIdentifierAddress(innerSum.getRight(), 0, 0);
+    }
+
+    @Test
+    void capture_the_name_a_function_is_defined_under() {
+        FunctionExpression function = (FunctionExpression) ((DefinitionExpression) resolveSource("x = 1\nf = \\n { f(n) }").get(1)).getDefinition();
+        assertArrayEquals(new int[]{0}, function.getCaptureDepths());
+        assertArrayEquals(new int[]{1}, function.getCaptureSlots());
+        assertIdentifierAddress(((CallExpression) function.getDefinition().get(0)).getCallee(), 1, 0);
+    }
+
+    @Test
+    void mark_only_calls_in_tail_position() {
+        FunctionExpression function = (FunctionExpression) resolveSource("\\f { f(1)\nif f(2) { (f(3)) } else { f(4) + f(5) } }").get(0);
+        IfExpression ifExpression = (IfExpression) function.getDefinition().get(1);
+        Binary sum = (Binary) ifExpression.getAlternative().get(0);
+        assertFalse(((CallExpression) function.getDefinition().get(0)).getTailCall());
+        assertFalse(((CallExpression) ifExpression.getCondition()).getTailCall());
+        assertTrue(((CallExpression) ((GroupExpression) ifExpression.getConsequent().get(0)).getInside()).getTailCall());
+        assertFalse(((CallExpression) sum.getLeft()).getTailCall());
+        assertFalse(((CallExpression) sum.getRight()).getTailCall());
+    }
+
+    @Test
+    void number_every_call_site_once() {
+        List<Expression> expressions = resolveSource("f(1)\nf(\\x { g(x) })(2)");
+        CallExpression outerCall = (CallExpression) expressions.get(1);
+        CallExpression innerCall = (CallExpression) ((FunctionExpression) ((CallExpression) outerCall.getCallee()).getArguments().get(0)).getDefinition().get(0);
+        assertEquals(0, ((CallExpression) expressions.get(0)).getCallSite());
+        assertEquals(1, outerCall.getCallSite());
+        assertEquals(2, ((CallExpression) outerCall.getCallee()).getCallSite());
+        assertEquals(3, innerCall.getCallSite());
+    }
+
+    @Test
+    void never_mark_top_level_calls() {
+        assertFalse(((CallExpression) resolveSource("f(1)").get(0)).getTailCall());
+    }
+
+    @Test
+    void resolve_functions_and_ifs_with_empty_blocks() {
+        FunctionExpression function = new FunctionExpression(List.of("x"),
+                List.of(new IfExpression(new TrueExpression(), List.of(), List.of(new CallExpression(new IdentifierExpression("x"), List.of())))));
+        new Resolver().resolve(function);
+        assertTrue(((CallExpression) ((IfExpression) function.getDefinition().get(0)).getAlternative().get(0)).getTailCall());
+        new Resolver().resolve(new FunctionExpression(List.of(), List.of()));
+    }
+
+    private static void assertIdentifierAddress(Expression expression, int depth, int slot) {
+        IdentifierExpression identifierExpression = (IdentifierExpression) expression;
+        assertEquals(depth, identifierExpression.getDepth());
+        assertEquals(slot, identifierExpression.getSlot());
+    }
+
+    private static List<Expression> resolveSource(String source) {
+        Lexer lexer = new Lexer(source, new DummyIoManager());
+        Parser parser = new Parser(lexer.lexSource(), new DummyIoManager());
+        List<Expression> expressions = parser.parseTokens();
+        new Resolver().resolve(expressions);
+        return expressions;
+    }
+}